@@ -0,0 +1,93 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.benchmarks;
+
+import com.github.pyknic.rocket.Rocket;
+import com.github.pyknic.rocket.benchmarks.ComponentGraphs.Shape;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to build a {@link Rocket} depending on the
+ * number of instances and the shape of the component graph, both when every
+ * phase is compiled up front, sequentially or in parallel, when phases are
+ * only validated, when instances are grouped by class and when the plans
+ * are loaded from a cache.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuildBenchmark {
+
+    @Param({"FLAT", "METHODS", "FAN_IN", "DEPTH", "MIXED"})
+    public Shape shape;
+
+    @Param({"100", "1000", "10000"})
+    public int instances;
+
+    private List<Object> components;
+    private Path cache;
+
+    @Setup
+    public void setup() throws IOException {
+        components = ComponentGraphs.generate(shape, instances, 42);
+        cache = Files.createTempFile("rocket", ".plans");
+        Files.delete(cache);
+        ComponentGraphs.builder(components).planCache(cache).build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(cache);
+    }
+
+    @Benchmark
+    public Rocket<Phase> build() {
+        return ComponentGraphs.builder(components).build();
+    }
+
+    @Benchmark
+    public Rocket<Phase> buildCached() {
+        return ComponentGraphs.builder(components).planCache(cache).build();
+    }
+
+    @Benchmark
+    public Rocket<Phase> buildLazy() {
+        return ComponentGraphs.builder(components).lazy().build();
+    }
+
+    @Benchmark
+    public Rocket<Phase> buildParallel() {
+        return ComponentGraphs.builder(components).parallelBuild().build();
+    }
+
+    @Benchmark
+    public Rocket<Phase> buildBulk() {
+        return ComponentGraphs.builder(components).bulk().build();
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.benchmarks;
+
+import com.github.pyknic.rocket.Rocket;
+import com.github.pyknic.rocket.RocketBuilder;
+import com.github.pyknic.rocket.benchmarks.Components.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Generates synthetic component graphs of different shapes. The same seed
+ * always produces the same graph so that results can be compared between
+ * releases.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+public final class ComponentGraphs {
+
+    /**
+     * The shape of a generated graph.
+     */
+    public enum Shape {
+
+        /**
+         * Components with a single action per phase and no dependencies.
+         */
+        FLAT,
+
+        /**
+         * Components with sixteen actions per phase.
+         */
+        METHODS,
+
+        /**
+         * Components that depend on eight other components each.
+         */
+        FAN_IN,
+
+        /**
+         * Components that are nine levels deep in an inheritance hierarchy.
+         */
+        DEPTH,
+
+        /**
+         * A random mix of all the other shapes.
+         */
+        MIXED
+    }
+
+    private static final List<Supplier<Object>> MIXED_COMPONENTS;
+
+    static {
+        final List<Supplier<Object>> components = new ArrayList<>();
+        components.add(Leaf::new);
+        components.add(FanIn2::new);
+        components.add(FanIn8::new);
+        components.add(Methods16::new);
+        components.add(Depth8::new);
+        components.addAll(providers());
+        MIXED_COMPONENTS = components;
+    }
+
+    /**
+     * Generates a list of components with the specified shape.
+     *
+     * @param shape      the shape of the graph
+     * @param instances  the number of instances to generate
+     * @param seed       the seed used for random choices
+     * @return           the generated instances in installation order
+     */
+    public static List<Object> generate(Shape shape, int instances, long seed) {
+        final List<Object> result = new ArrayList<>(instances);
+        final Random random = new Random(seed);
+
+        // Every component that has dependencies needs the providers to be
+        // installed.
+        if (shape == Shape.FAN_IN || shape == Shape.MIXED) {
+            providers().forEach(p -> result.add(p.get()));
+        }
+
+        while (result.size() < instances) {
+            switch (shape) {
+                case FLAT    : result.add(new Leaf()); break;
+                case METHODS : result.add(new Methods16()); break;
+                case FAN_IN  : result.add(new FanIn8()); break;
+                case DEPTH   : result.add(new Depth8()); break;
+                case MIXED   : result.add(MIXED_COMPONENTS.get(
+                    random.nextInt(MIXED_COMPONENTS.size())).get()); break;
+                default : throw new UnsupportedOperationException(
+                    "Unknown shape '" + shape + "'.");
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates a new builder with all the specified components installed.
+     *
+     * @param components  the components to install
+     * @return            the builder
+     */
+    public static RocketBuilder<Phase> builder(List<Object> components) {
+        final RocketBuilder<Phase> builder = Rocket.builder(Phase.class);
+        components.forEach(builder::with);
+        return builder;
+    }
+
+    private static List<Supplier<Object>> providers() {
+        final List<Supplier<Object>> providers = new ArrayList<>();
+        providers.add(P0::new);
+        providers.add(P1::new);
+        providers.add(P2::new);
+        providers.add(P3::new);
+        providers.add(P4::new);
+        providers.add(P5::new);
+        providers.add(P6::new);
+        providers.add(P7::new);
+        return providers;
+    }
+
+    private ComponentGraphs() {}
+}
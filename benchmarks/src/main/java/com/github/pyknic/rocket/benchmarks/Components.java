@@ -0,0 +1,146 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.benchmarks;
+
+import com.github.pyknic.rocket.Execute;
+
+/**
+ * Synthetic components used to generate the graphs that are benchmarked. The
+ * actions only increment a counter so that the cost of launching them is
+ * dominated by the launch system itself.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+public final class Components {
+
+    /**
+     * Component with a single action in every phase and no dependencies.
+     */
+    public static class Leaf {
+        long ticks;
+        @Execute("init") void init() {ticks = 0;}
+        @Execute("update") void update() {ticks++;}
+        @Execute("destroy") void destroy() {ticks = -1;}
+    }
+
+    /*
+     * Distinct types that other components can depend on.
+     */
+    public static class P0 extends Leaf {}
+
+    public static class P1 extends Leaf {}
+
+    public static class P2 extends Leaf {}
+
+    public static class P3 extends Leaf {}
+
+    public static class P4 extends Leaf {}
+
+    public static class P5 extends Leaf {}
+
+    public static class P6 extends Leaf {}
+
+    public static class P7 extends Leaf {}
+
+    /**
+     * Component that depends on two other components in the update phase.
+     */
+    public static class FanIn2 extends Leaf {
+        @Execute("update") void consume(P0 p0, P1 p1) {ticks++;}
+    }
+
+    /**
+     * Component that depends on eight other components in the update phase.
+     */
+    public static class FanIn8 extends Leaf {
+        @Execute("update") void consume(P0 p0, P1 p1, P2 p2, P3 p3, P4 p4, P5 p5, P6 p6, P7 p7) {ticks++;}
+    }
+
+    /**
+     * Component with sixteen actions in both the init and the update phase.
+     */
+    public static class Methods16 {
+        long ticks;
+        @Execute("init") void init0() {ticks = 0;}
+        @Execute("init") void init1() {ticks = 0;}
+        @Execute("init") void init2() {ticks = 0;}
+        @Execute("init") void init3() {ticks = 0;}
+        @Execute("init") void init4() {ticks = 0;}
+        @Execute("init") void init5() {ticks = 0;}
+        @Execute("init") void init6() {ticks = 0;}
+        @Execute("init") void init7() {ticks = 0;}
+        @Execute("init") void init8() {ticks = 0;}
+        @Execute("init") void init9() {ticks = 0;}
+        @Execute("init") void init10() {ticks = 0;}
+        @Execute("init") void init11() {ticks = 0;}
+        @Execute("init") void init12() {ticks = 0;}
+        @Execute("init") void init13() {ticks = 0;}
+        @Execute("init") void init14() {ticks = 0;}
+        @Execute("init") void init15() {ticks = 0;}
+        @Execute("update") void update0() {ticks++;}
+        @Execute("update") void update1() {ticks++;}
+        @Execute("update") void update2() {ticks++;}
+        @Execute("update") void update3() {ticks++;}
+        @Execute("update") void update4() {ticks++;}
+        @Execute("update") void update5() {ticks++;}
+        @Execute("update") void update6() {ticks++;}
+        @Execute("update") void update7() {ticks++;}
+        @Execute("update") void update8() {ticks++;}
+        @Execute("update") void update9() {ticks++;}
+        @Execute("update") void update10() {ticks++;}
+        @Execute("update") void update11() {ticks++;}
+        @Execute("update") void update12() {ticks++;}
+        @Execute("update") void update13() {ticks++;}
+        @Execute("update") void update14() {ticks++;}
+        @Execute("update") void update15() {ticks++;}
+    }
+
+    /*
+     * Inheritance chain where every level implements an interface of its own,
+     * but where only the root declares any actions.
+     */
+    public interface Level0 {}
+    public interface Level1 {}
+    public interface Level2 {}
+    public interface Level3 {}
+    public interface Level4 {}
+    public interface Level5 {}
+    public interface Level6 {}
+    public interface Level7 {}
+    public interface Level8 {}
+
+    public static class Depth0 extends Leaf implements Level0 {}
+
+    public static class Depth1 extends Depth0 implements Level1 {}
+
+    public static class Depth2 extends Depth1 implements Level2 {}
+
+    public static class Depth3 extends Depth2 implements Level3 {}
+
+    public static class Depth4 extends Depth3 implements Level4 {}
+
+    public static class Depth5 extends Depth4 implements Level5 {}
+
+    public static class Depth6 extends Depth5 implements Level6 {}
+
+    public static class Depth7 extends Depth6 implements Level7 {}
+
+    public static class Depth8 extends Depth7 implements Level8 {}
+
+    private Components() {}
+}
@@ -0,0 +1,92 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.benchmarks;
+
+import com.github.pyknic.rocket.Rocket;
+import com.github.pyknic.rocket.RocketBuilder;
+import com.github.pyknic.rocket.benchmarks.ComponentGraphs.Shape;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the steady-state throughput of launching the update phase of an
+ * already built {@link Rocket}. Run it with the GC profiler (which is the
+ * default when using {@link Main}) to also get the allocation rate per
+ * launch.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LaunchBenchmark {
+
+    public enum Mode {
+        SEQUENTIAL,
+        PARALLEL,
+        AFFINITY
+    }
+
+    @Param({"FLAT", "FAN_IN", "MIXED"})
+    public Shape shape;
+
+    @Param({"100", "1000"})
+    public int instances;
+
+    @Param({"SEQUENTIAL", "PARALLEL", "AFFINITY"})
+    public Mode mode;
+
+    private ExecutorService executor;
+    private Rocket<Phase> rocket;
+
+    @Setup
+    public void setup() {
+        final RocketBuilder<Phase> builder = ComponentGraphs.builder(
+            ComponentGraphs.generate(shape, instances, 42)
+        );
+
+        if (mode == Mode.PARALLEL) {
+            executor = new ForkJoinPool();
+            builder.executor(executor);
+        } else if (mode == Mode.AFFINITY) {
+            builder.affinity(Runtime.getRuntime().availableProcessors());
+        }
+
+        rocket = builder.build();
+        rocket.launch(Phase.INIT);
+    }
+
+    @TearDown
+    public void tearDown() {
+        rocket.launch(Phase.DESTROY);
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void launch() {
+        rocket.launch(Phase.UPDATE);
+    }
+}
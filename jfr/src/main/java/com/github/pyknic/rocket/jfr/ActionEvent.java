@@ -0,0 +1,54 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Recorded when an action in a phase has finished. The duration includes the
+ * time until a returned {@link java.util.concurrent.CompletionStage} has
+ * completed.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+@Name(ActionEvent.NAME)
+@Label("Invoke Action")
+@Category("Rocket")
+@Description("An annotated method was invoked")
+final class ActionEvent extends Event {
+
+    static final String NAME = "com.github.pyknic.rocket.Action";
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Action")
+    @Description("The display name of the annotated method")
+    String action;
+
+    @Label("Index")
+    @Description("The index of the action in the launched plan")
+    int index;
+
+    @Label("Failed")
+    boolean failed;
+}
@@ -0,0 +1,48 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Recorded when the plan of a phase has been compiled.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+@Name(CompileEvent.NAME)
+@Label("Compile Phase")
+@Category("Rocket")
+@Description("The plan of a phase was compiled")
+final class CompileEvent extends Event {
+
+    static final String NAME = "com.github.pyknic.rocket.Compile";
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Actions")
+    @Description("The number of actions in the compiled plan")
+    int actions;
+
+    @Label("Failed")
+    boolean failed;
+}
@@ -0,0 +1,224 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.jfr;
+
+import com.github.pyknic.rocket.PhaseGraph;
+import com.github.pyknic.rocket.RocketListener;
+import jdk.jfr.Event;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Listener that records every compiled phase, launched phase and invoked
+ * action as a Java Flight Recorder event in the {@code Rocket} category:
+ * <ul>
+ *     <li>{@code com.github.pyknic.rocket.Compile} when the plan of a phase
+ *         is compiled,
+ *     <li>{@code com.github.pyknic.rocket.Phase} when a phase is launched,
+ *     <li>{@code com.github.pyknic.rocket.Action} when an annotated method
+ *         is invoked.
+ * </ul>
+ * The events have the name of the phase and, for actions, the same display
+ * name as is used in the messages of Rocket. The duration and the thread are
+ * recorded by the flight recorder. For actions, that is the thread that
+ * finished the action, which is not the thread that invoked it if the method
+ * returned a {@link java.util.concurrent.CompletionStage} that was completed
+ * by some other thread.
+ * <p>
+ * If an event type is not enabled in any running recording, nothing is
+ * stored and no names are looked up for it. Usage:
+ * <pre>{@code
+ *     Rocket.builder(Phase.class)
+ *         .with(...)
+ *         .listener(new JfrListener())
+ *         .build();
+ * }</pre>
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+public final class JfrListener implements RocketListener {
+
+    private static final int WHOLE = -1;
+
+    private final ConcurrentMap<Key, Pending> pending;
+
+    public JfrListener() {
+        this.pending = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void beforeCompile(String phase) {
+        final CompileEvent event = new CompileEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            push(phase, WHOLE, event);
+        }
+    }
+
+    @Override
+    public void afterCompile(PhaseGraph phase, long nanos) {
+        final CompileEvent event = (CompileEvent) pop(phase.phase(), WHOLE);
+        if (event != null && event.shouldCommit()) {
+            event.phase   = phase.phase();
+            event.actions = phase.actionCount();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void compileFailed(String phase, long nanos, Throwable cause) {
+        final CompileEvent event = (CompileEvent) pop(phase, WHOLE);
+        if (event != null && event.shouldCommit()) {
+            event.phase  = phase;
+            event.failed = true;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void beforePhase(PhaseGraph phase) {
+        final PhaseEvent event = new PhaseEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            push(phase, WHOLE, event);
+        }
+    }
+
+    @Override
+    public void afterPhase(PhaseGraph phase, long nanos) {
+        commitPhase(phase, false);
+    }
+
+    @Override
+    public void phaseFailed(PhaseGraph phase, long nanos, Throwable cause) {
+        commitPhase(phase, true);
+    }
+
+    @Override
+    public void beforeAction(PhaseGraph phase, int action) {
+        final ActionEvent event = new ActionEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            push(phase, action, event);
+        }
+    }
+
+    @Override
+    public void afterAction(PhaseGraph phase, int action, long nanos) {
+        commitAction(phase, action, false);
+    }
+
+    @Override
+    public void actionFailed(PhaseGraph phase, int action,
+                             long nanos, Throwable cause) {
+        commitAction(phase, action, true);
+    }
+
+    private void commitPhase(PhaseGraph phase, boolean failed) {
+        final PhaseEvent event = (PhaseEvent) pop(phase, WHOLE);
+        if (event != null && event.shouldCommit()) {
+            event.phase   = phase.phase();
+            event.actions = phase.actionCount();
+            event.failed  = failed;
+            event.commit();
+        }
+    }
+
+    private void commitAction(PhaseGraph phase, int action, boolean failed) {
+        final ActionEvent event = (ActionEvent) pop(phase, action);
+        if (event != null && event.shouldCommit()) {
+            event.phase  = phase.phase();
+            event.action = phase.actionName(action);
+            event.index  = action;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    private void push(Object owner, int index, Event event) {
+        pending.compute(new Key(owner, index),
+            (key, next) -> new Pending(event, next));
+    }
+
+    /**
+     * Removes the event that was begun most recently for the specified
+     * owner and index, or returns {@code null} if there is none, for an
+     * example because no recording was running when it would have begun.
+     *
+     * @param owner  the graph, or the phase name for a compilation
+     * @param index  the action index, or {@link #WHOLE}
+     * @return       the event or {@code null}
+     */
+    private Event pop(Object owner, int index) {
+        if (pending.isEmpty()) return null;
+
+        final Event[] result = {null};
+        pending.computeIfPresent(new Key(owner, index), (key, head) -> {
+            result[0] = head.event;
+            return head.next;
+        });
+
+        return result[0];
+    }
+
+    /**
+     * Identifies a pending event. Graphs are compared by identity since they
+     * do not override {@code equals}, and phase names by value.
+     */
+    private static final class Key {
+
+        private final Object owner;
+        private final int index;
+
+        Key(Object owner, int index) {
+            this.owner = requireNonNull(owner);
+            this.index = index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key that = (Key) o;
+            return index == that.index && owner.equals(that.owner);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * owner.hashCode() + index;
+        }
+    }
+
+    /**
+     * Stack of events that have begun for the same key, which only has more
+     * than one element if the same graph is launched concurrently.
+     */
+    private static final class Pending {
+
+        private final Event event;
+        private final Pending next;
+
+        Pending(Event event, Pending next) {
+            this.event = requireNonNull(event);
+            this.next  = next;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.jfr;
+
+import com.github.pyknic.rocket.Execute;
+import com.github.pyknic.rocket.Rocket;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+class JfrListenerTest {
+
+    enum Phase {
+        INIT,
+        UPDATE
+    }
+
+    static class First {
+        @Execute("init") void init() {}
+    }
+
+    static class Second {
+        @Execute("init") void init(First first) {}
+        @Execute("update") void update() {throw new IllegalStateException();}
+    }
+
+    @Test
+    void record() throws IOException {
+        final Path file = Files.createTempFile("rocket", ".jfr");
+
+        try (final Recording recording = new Recording()) {
+            recording.enable(CompileEvent.NAME);
+            recording.enable(PhaseEvent.NAME);
+            recording.enable(ActionEvent.NAME);
+            recording.start();
+
+            final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+                .with(new First())
+                .with(new Second())
+                .listener(new JfrListener())
+                .build();
+
+            rocket.launch(Phase.INIT);
+            assertThrows(RuntimeException.class, () -> rocket.launch(Phase.UPDATE));
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        try {
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+            final List<RecordedEvent> compiled = events(events, CompileEvent.NAME);
+            assertEquals(2, compiled.size());
+            assertEquals(
+                Set.of("INIT", "UPDATE"),
+                compiled.stream().map(e -> e.getString("phase")).collect(toSet())
+            );
+
+            final List<RecordedEvent> phases = events(events, PhaseEvent.NAME);
+            assertEquals(2, phases.size());
+            for (final RecordedEvent phase : phases) {
+                final boolean init = "INIT".equals(phase.getString("phase"));
+                assertEquals(init ? 2 : 1, phase.getInt("actions"));
+                assertEquals(!init, phase.getBoolean("failed"));
+            }
+
+            final List<RecordedEvent> actions = events(events, ActionEvent.NAME);
+            assertEquals(
+                Set.of("INIT First#init()", "INIT Second#init(First)",
+                       "UPDATE Second#update() failed"),
+                actions.stream().map(e ->
+                    e.getString("phase") + " " + e.getString("action") +
+                    (e.getBoolean("failed") ? " failed" : "")
+                ).collect(toSet())
+            );
+
+            for (final RecordedEvent action : actions) {
+                assertEquals(Thread.currentThread().getName(),
+                    action.getThread().getJavaName());
+                assertFalse(action.getDuration().isNegative());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<RecordedEvent> events(List<RecordedEvent> events,
+                                              String name) {
+        return events.stream()
+            .filter(e -> e.getEventType().getName().equals(name))
+            .collect(toList());
+    }
+}
@@ -0,0 +1,382 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.processor;
+
+import com.github.pyknic.rocket.Execute;
+import com.github.pyknic.rocket.ExecutePlan;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+import static java.util.Collections.singleton;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Annotation processor that generates an {@link ExecutePlan} for every
+ * concrete class that has {@link Execute}-annotated methods, so that Rocket
+ * can invoke them without reflection. Classes where some annotated method is
+ * not accessible from generated code in the same package (for an example
+ * private methods) are skipped and will be scanned with reflection instead.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+public final class ExecuteProcessor extends AbstractProcessor {
+
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return singleton(Execute.class.getName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations,
+                           RoundEnvironment roundEnv) {
+
+        roundEnv.getElementsAnnotatedWith(Execute.class).stream()
+            .filter(e -> e.getModifiers().contains(Modifier.STATIC))
+            .forEach(e -> processingEnv.getMessager().printMessage(
+                Diagnostic.Kind.WARNING,
+                "@Execute has no effect on static methods.", e
+            ));
+
+        final Set<TypeElement> types = new LinkedHashSet<>();
+        roundEnv.getRootElements().forEach(e -> collectTypes(e, types));
+        types.forEach(this::generate);
+
+        return false;
+    }
+
+    /**
+     * Adds the specified element and every member type in it to the set if
+     * they are classes that could have a plan.
+     *
+     * @param element  the element to traverse
+     * @param types    the set to add types to
+     */
+    private void collectTypes(Element element, Set<TypeElement> types) {
+        if (!(element instanceof TypeElement)) return;
+        if (element.getModifiers().contains(Modifier.PRIVATE)) return;
+
+        final TypeElement type = (TypeElement) element;
+        if ((type.getKind() == ElementKind.CLASS
+        &&  !type.getModifiers().contains(Modifier.ABSTRACT))
+        ||   type.getKind() == ElementKind.ENUM) {
+            types.add(type);
+        }
+
+        type.getEnclosedElements().forEach(e -> collectTypes(e, types));
+    }
+
+    /**
+     * Generates the plan for the specified type if it has any annotated
+     * methods and all of them can be invoked from the generated code.
+     *
+     * @param type  the type to generate a plan for
+     */
+    private void generate(TypeElement type) {
+        final String pkg = processingEnv.getElementUtils()
+            .getPackageOf(type).getQualifiedName().toString();
+
+        final List<ExecutableElement> methods = new ArrayList<>();
+        for (final TypeElement ancestor : ancestors(type)) {
+            for (final ExecutableElement method :
+                    ElementFilter.methodsIn(ancestor.getEnclosedElements())) {
+
+                if (method.getModifiers().contains(Modifier.STATIC)
+                ||  method.getAnnotation(Execute.class) == null) {
+                    continue;
+                }
+
+                if (!isAccessible(method, ancestor, pkg)
+                ||  !method.getParameters().stream()
+                        .allMatch(p -> isAccessible(p.asType(), pkg))) {
+                    processingEnv.getMessager().printMessage(
+                        Diagnostic.Kind.NOTE,
+                        "No plan is generated for " + type.getQualifiedName() +
+                        " since " + method.getSimpleName() + " is not " +
+                        "accessible. Reflection will be used instead.", type
+                    );
+                    return;
+                }
+
+                methods.add(method);
+            }
+        }
+
+        if (methods.isEmpty()) return;
+
+        final String simpleName = flatName(type) + ExecutePlan.SUFFIX;
+        final String planName = pkg.isEmpty() ? simpleName
+            : pkg + "." + simpleName;
+
+        if (!generated.add(planName)) return;
+
+        try (final Writer writer = processingEnv.getFiler()
+                .createSourceFile(planName, type).openWriter()) {
+            writer.write(source(type, pkg, simpleName, methods));
+        } catch (final IOException ex) {
+            processingEnv.getMessager().printMessage(
+                Diagnostic.Kind.ERROR,
+                "Could not generate " + planName + ": " + ex.getMessage(),
+                type
+            );
+        }
+    }
+
+    private String source(TypeElement type,
+                          String pkg,
+                          String simpleName,
+                          List<ExecutableElement> methods) {
+
+        final String typeName = erasure(type.asType());
+        final StringBuilder str = new StringBuilder();
+
+        if (!pkg.isEmpty()) {
+            str.append("package ").append(pkg).append(";\n\n");
+        }
+
+        str.append("/**\n")
+           .append(" * Launch plan for {@link ").append(typeName).append("}.\n")
+           .append(" * <p>\n")
+           .append(" * Generated by ").append(getClass().getName())
+           .append(". Do not edit.\n")
+           .append(" */\n")
+           .append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+           .append("public final class ").append(simpleName)
+           .append(" implements com.github.pyknic.rocket.ExecutePlan<")
+           .append(typeName).append("> {\n\n");
+
+        str.append("    private static final String[] PHASES = {")
+           .append(methods.stream()
+               .map(m -> literal(m.getAnnotation(Execute.class).value()))
+               .collect(joining(", ")))
+           .append("};\n\n");
+
+        str.append("    private static final String[] NAMES = {")
+           .append(methods.stream()
+               .map(m -> literal(m.getSimpleName().toString()))
+               .collect(joining(", ")))
+           .append("};\n\n");
+
+        str.append("    private static final boolean[] BLOCKING = {")
+           .append(methods.stream()
+               .map(m -> String.valueOf(m.getAnnotation(Execute.class).blocking()))
+               .collect(joining(", ")))
+           .append("};\n\n");
+
+        str.append("    private static final Class<?>[][] PARAMETER_TYPES = {\n")
+           .append(methods.stream()
+               .map(m -> "        {" + m.getParameters().stream()
+                   .map(p -> erasure(p.asType()) + ".class")
+                   .collect(joining(", ")) + "}")
+               .collect(joining(",\n")))
+           .append("\n    };\n\n");
+
+        str.append("    @Override\n")
+           .append("    public int size() {\n")
+           .append("        return ").append(methods.size()).append(";\n")
+           .append("    }\n\n");
+
+        str.append("    @Override\n")
+           .append("    public String phase(int method) {\n")
+           .append("        return PHASES[method];\n")
+           .append("    }\n\n");
+
+        str.append("    @Override\n")
+           .append("    public String methodName(int method) {\n")
+           .append("        return NAMES[method];\n")
+           .append("    }\n\n");
+
+        str.append("    @Override\n")
+           .append("    public Class<?>[] parameterTypes(int method) {\n")
+           .append("        return PARAMETER_TYPES[method].clone();\n")
+           .append("    }\n\n");
+
+        str.append("    @Override\n")
+           .append("    public boolean blocking(int method) {\n")
+           .append("        return BLOCKING[method];\n")
+           .append("    }\n\n");
+
+        str.append("    @Override\n")
+           .append("    public Invocation bind(int method, ")
+           .append("final ").append(typeName).append(" instance, ")
+           .append("final Object... args) {\n")
+           .append("        switch (method) {\n");
+
+        for (int i = 0; i < methods.size(); i++) {
+            final List<? extends VariableElement> params =
+                methods.get(i).getParameters();
+
+            str.append("            case ").append(i).append(" : {\n");
+            for (int j = 0; j < params.size(); j++) {
+                final String paramType = erasure(params.get(j).asType());
+                str.append("                final ").append(paramType)
+                   .append(" arg").append(j).append(" = (").append(paramType)
+                   .append(") args[").append(j).append("];\n");
+            }
+
+            final StringBuilder call = new StringBuilder("instance.")
+                .append(methods.get(i).getSimpleName()).append("(");
+            for (int j = 0; j < params.size(); j++) {
+                if (j > 0) call.append(", ");
+                call.append("arg").append(j);
+            }
+            call.append(")");
+
+            // Void methods must return null explicitly. So do methods that
+            // return a primitive, since only a returned CompletionStage is
+            // ever used and the value would be boxed on every invocation.
+            final TypeKind kind = methods.get(i).getReturnType().getKind();
+            if (kind == TypeKind.VOID || kind.isPrimitive()) {
+                str.append("                return () -> {").append(call)
+                   .append("; return null;};\n");
+            } else {
+                str.append("                return () -> ").append(call)
+                   .append(";\n");
+            }
+
+            str.append("            }\n");
+        }
+
+        str.append("            default : throw new IndexOutOfBoundsException(")
+           .append("\"No method with index \" + method + \".\");\n")
+           .append("        }\n")
+           .append("    }\n")
+           .append("}\n");
+
+        return str.toString();
+    }
+
+    /**
+     * Returns every ancestor of the specified type in the same order as
+     * {@code ReflectionUtil.traverseAncestors} would at runtime.
+     *
+     * @param type  the type
+     * @return      the type followed by all its ancestors
+     */
+    private Set<TypeElement> ancestors(TypeElement type) {
+        final Set<TypeElement> result = new LinkedHashSet<>();
+        traverseAncestors(type, result);
+        return result;
+    }
+
+    private void traverseAncestors(TypeElement type, Set<TypeElement> into) {
+        if (!into.add(type)) return;
+
+        final TypeMirror parent = type.getSuperclass();
+        if (parent.getKind() == TypeKind.DECLARED) {
+            traverseAncestors(asElement(parent), into);
+        }
+
+        for (final TypeMirror iface : type.getInterfaces()) {
+            traverseAncestors(asElement(iface), into);
+        }
+    }
+
+    private boolean isAccessible(ExecutableElement method,
+                                 TypeElement declaring,
+                                 String pkg) {
+
+        final Set<Modifier> modifiers = method.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) return false;
+        return modifiers.contains(Modifier.PUBLIC)
+            || packageOf(declaring).equals(pkg);
+    }
+
+    private boolean isAccessible(TypeMirror type, String pkg) {
+        switch (type.getKind()) {
+            case ARRAY    : return isAccessible(
+                ((ArrayType) type).getComponentType(), pkg);
+            case DECLARED : break;
+            default       : return true;
+        }
+
+        for (Element e = asElement(type);
+             e instanceof TypeElement;
+             e = e.getEnclosingElement()) {
+
+            final Set<Modifier> modifiers = e.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)) return false;
+            if (!modifiers.contains(Modifier.PUBLIC)
+            &&  !packageOf(e).equals(pkg)) return false;
+        }
+
+        return true;
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private String packageOf(Element element) {
+        return processingEnv.getElementUtils()
+            .getPackageOf(element).getQualifiedName().toString();
+    }
+
+    private static TypeElement asElement(TypeMirror type) {
+        return (TypeElement) ((DeclaredType) type).asElement();
+    }
+
+    /**
+     * Returns the simple names of the specified type and all the types it is
+     * nested in, separated by underscores.
+     *
+     * @param type  the type
+     * @return      the flat name
+     */
+    private static String flatName(TypeElement type) {
+        final Element parent = type.getEnclosingElement();
+        if (parent instanceof TypeElement) {
+            return flatName((TypeElement) parent) + "_" + type.getSimpleName();
+        } else {
+            return type.getSimpleName().toString();
+        }
+    }
+
+    private static String literal(String value) {
+        final StringBuilder str = new StringBuilder("\"");
+        for (final char c : value.toCharArray()) {
+            switch (c) {
+                case '"'  : str.append("\\\""); break;
+                case '\\' : str.append("\\\\"); break;
+                case '\n' : str.append("\\n"); break;
+                case '\r' : str.append("\\r"); break;
+                case '\t' : str.append("\\t"); break;
+                default   : str.append(c); break;
+            }
+        }
+        return str.append('"').toString();
+    }
+}
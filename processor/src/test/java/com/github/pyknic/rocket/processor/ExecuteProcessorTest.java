@@ -0,0 +1,168 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.processor;
+
+import com.github.pyknic.rocket.ExecutePlan;
+import com.github.pyknic.rocket.Rocket;
+import com.github.pyknic.rocket.RocketException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+class ExecuteProcessorTest {
+
+    enum Phase {
+        INIT,
+        UPDATE
+    }
+
+    private static final String SOURCE = String.join("\n",
+        "package sample;",
+        "",
+        "import com.github.pyknic.rocket.Execute;",
+        "import java.util.ArrayList;",
+        "import java.util.List;",
+        "",
+        "public class Engine {",
+        "    public static final List<String> LOG = new ArrayList<>();",
+        "",
+        "    @Execute(\"init\") void init() {LOG.add(\"Engine\");}",
+        "    @Execute(\"update\") void update() {throw new IllegalStateException();}",
+        "",
+        "    public static class Wheel {",
+        "        @Execute(\"init\") void init(Engine engine) {LOG.add(\"Wheel\");}",
+        "        @Execute(value = \"update\", blocking = true) void update() {}",
+        "    }",
+        "",
+        "    public static class Gauge {",
+        "        @Execute(\"init\") int read(Engine engine) {return 42;}",
+        "    }",
+        "",
+        "    public static class Secret {",
+        "        @Execute(\"init\") private void init(Wheel wheel) {LOG.add(\"Secret\");}",
+        "    }",
+        "}"
+    );
+
+    private static ClassLoader loader;
+
+    @BeforeAll
+    static void compile() throws IOException {
+        final Path dir = Files.createTempDirectory("rocket-processor");
+        final Path source = dir.resolve("sample").resolve("Engine.java");
+        Files.createDirectories(source.getParent());
+        Files.write(source, SOURCE.getBytes("UTF-8"));
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (final StandardJavaFileManager files =
+                 compiler.getStandardFileManager(null, null, null)) {
+
+            final String classpath = location(ExecutePlan.class) +
+                File.pathSeparator + location(ExecuteProcessor.class);
+
+            final JavaCompiler.CompilationTask task = compiler.getTask(
+                null, files, null,
+                asList("-classpath", classpath, "-d", dir.toString()),
+                null, files.getJavaFileObjects(source.toFile())
+            );
+
+            task.setProcessors(singleton(new ExecuteProcessor()));
+            assertTrue(task.call(), "Compilation failed.");
+        }
+
+        loader = new URLClassLoader(new URL[] {dir.toUri().toURL()},
+            ExecuteProcessorTest.class.getClassLoader());
+    }
+
+    @Test
+    void generatesPlans() throws Throwable {
+        final Class<?> plan = loader.loadClass("sample.Engine_RocketPlan");
+        assertTrue(ExecutePlan.class.isAssignableFrom(plan));
+
+        final ExecutePlan<?> wheel =
+            (ExecutePlan<?>) instance("sample.Engine_Wheel_RocketPlan");
+        assertEquals("update", wheel.phase(1));
+        assertFalse(wheel.blocking(0));
+        assertTrue(wheel.blocking(1));
+
+        // Primitive return values are not boxed, since they are never used.
+        @SuppressWarnings("unchecked")
+        final ExecutePlan<Object> gauge =
+            (ExecutePlan<Object>) instance("sample.Engine_Gauge_RocketPlan");
+        assertNull(gauge.bind(0, instance("sample.Engine$Gauge"),
+            instance("sample.Engine")).invoke());
+
+        // Private methods can't be invoked from the generated code.
+        assertThrows(ClassNotFoundException.class,
+            () -> loader.loadClass("sample.Engine_Secret_RocketPlan"));
+    }
+
+    @Test
+    void launch() throws Exception {
+        final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+            .with(instance("sample.Engine$Secret"))
+            .with(instance("sample.Engine$Wheel"))
+            .with(instance("sample.Engine"))
+            .build();
+
+        rocket.launch(Phase.INIT);
+
+        @SuppressWarnings("unchecked")
+        final List<String> log = (List<String>)
+            loader.loadClass("sample.Engine").getField("LOG").get(null);
+        assertEquals(asList("Engine", "Wheel", "Secret"), log);
+
+        // Failures should be thrown from the generated plan.
+        final RocketException ex = assertThrows(RocketException.class,
+            () -> rocket.launch(Phase.UPDATE));
+        assertTrue(ex.getCause() instanceof IllegalStateException);
+        assertTrue(Stream.of(ex.getCause().getStackTrace())
+            .anyMatch(e -> e.getClassName().startsWith("sample.Engine_RocketPlan")));
+    }
+
+    private static Object instance(String className) throws Exception {
+        return loader.loadClass(className).getDeclaredConstructor().newInstance();
+    }
+
+    private static String location(Class<?> clazz) {
+        try {
+            return new File(clazz.getProtectionDomain()
+                .getCodeSource().getLocation().toURI()).getPath();
+        } catch (final Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
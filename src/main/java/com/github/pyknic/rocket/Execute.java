@@ -25,6 +25,10 @@ import java.lang.annotation.Target;
 /**
  * Annotation that signals that a method should be invoked as part of a phase in
  * the launcher.
+ * <p>
+ * If the annotated method returns a {@link java.util.concurrent.CompletionStage},
+ * the action is not considered finished until that stage has completed. Any
+ * methods that depend on it will not be invoked before then.
  *
  * @author Emil Forslund
  * @since 1.0.0
@@ -42,4 +46,19 @@ public @interface Execute {
      */
     String value();
 
+    /**
+     * Whether the method spends most of its time blocked, for an example on
+     * disk or network I/O, rather than using the CPU. When a phase is
+     * launched in parallel or asynchronously, blocking methods are invoked on
+     * a separate pool of threads that grows as needed, so that they never
+     * occupy the threads that the other methods run on. Blocking methods are
+     * still ordered by their dependencies like every other method.
+     *
+     * @return  {@code true} if the method blocks
+     *
+     * @see RocketBuilder#blockingExecutor(java.util.concurrent.Executor)
+     * @since 1.1.0
+     */
+    boolean blocking() default false;
+
 }
@@ -0,0 +1,114 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket;
+
+/**
+ * Precompiled description of the {@link Execute}-annotated methods of a class
+ * that can invoke them without using reflection. Implementations are
+ * generated by the {@code rocket-processor} annotation processor and should
+ * not be written by hand.
+ * <p>
+ * The plan for a class {@code com.example.Outer.Inner} is named
+ * {@code com.example.Outer_Inner_RocketPlan}. If such a class exists when an
+ * instance is added to a {@link RocketBuilder}, it is used instead of
+ * scanning the class with reflection. Implementations must be public and
+ * have a public no-argument constructor.
+ *
+ * @param <T>  the class that the plan is for
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+public interface ExecutePlan<T> {
+
+    /**
+     * The suffix added to the flattened name of a class to get the name of
+     * its plan.
+     */
+    String SUFFIX = "_RocketPlan";
+
+    /**
+     * Returns the number of {@link Execute}-annotated methods in the class,
+     * including inherited ones.
+     *
+     * @return  the number of methods
+     */
+    int size();
+
+    /**
+     * Returns the {@link Execute#value()} of the method with the specified
+     * index.
+     *
+     * @param method  the method index
+     * @return        the phase name
+     */
+    String phase(int method);
+
+    /**
+     * Returns the name of the method with the specified index.
+     *
+     * @param method  the method index
+     * @return        the method name
+     */
+    String methodName(int method);
+
+    /**
+     * Returns the parameter types of the method with the specified index.
+     *
+     * @param method  the method index
+     * @return        the parameter types
+     */
+    Class<?>[] parameterTypes(int method);
+
+    /**
+     * Returns the {@link Execute#blocking()} of the method with the
+     * specified index.
+     *
+     * @param method  the method index
+     * @return        {@code true} if the method blocks
+     */
+    default boolean blocking(int method) {
+        return false;
+    }
+
+    /**
+     * Binds the method with the specified index to an instance and a set of
+     * arguments so that it can be invoked later.
+     *
+     * @param method    the method index
+     * @param instance  the instance to invoke the method on
+     * @param args      the arguments, one for each parameter type
+     * @return          the bound invocation
+     */
+    Invocation bind(int method, T instance, Object... args);
+
+    /**
+     * A method bound to an instance and a set of arguments.
+     */
+    @FunctionalInterface
+    interface Invocation {
+
+        /**
+         * Invokes the method.
+         *
+         * @return  the value returned by the method, or {@code null} if the
+         *          method is void
+         * @throws Throwable  anything thrown by the method
+         */
+        Object invoke() throws Throwable;
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of durations in nanoseconds. Durations are counted
+ * in buckets where every bucket is twice as wide as the previous one, so
+ * percentiles are approximate while the count, minimum, maximum and mean are
+ * exact.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets;
+    private final AtomicLong count;
+    private final AtomicLong total;
+    private final AtomicLong min;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count   = new AtomicLong();
+        this.total   = new AtomicLong();
+        this.min     = new AtomicLong(Long.MAX_VALUE);
+        this.max     = new AtomicLong(Long.MIN_VALUE);
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos  the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        final long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        min.accumulateAndGet(value, Math::min);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return  the count
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * Returns the shortest recorded duration, or {@code 0} if nothing has
+     * been recorded.
+     *
+     * @return  the minimum in nanoseconds
+     */
+    public long min() {
+        return count() == 0 ? 0 : min.get();
+    }
+
+    /**
+     * Returns the longest recorded duration, or {@code 0} if nothing has been
+     * recorded.
+     *
+     * @return  the maximum in nanoseconds
+     */
+    public long max() {
+        return count() == 0 ? 0 : max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded durations, or {@code 0} if nothing has
+     * been recorded.
+     *
+     * @return  the mean in nanoseconds
+     */
+    public long mean() {
+        final long n = count();
+        return n == 0 ? 0 : total.get() / n;
+    }
+
+    /**
+     * Returns an upper bound of the specified percentile of the recorded
+     * durations. The result is never larger than {@link #max()}.
+     *
+     * @param percentile  the percentile, between {@code 0} and {@code 100}
+     * @return            the percentile in nanoseconds
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException(
+                "Percentile must be between 0 and 100, was " + percentile + ".");
+        }
+
+        final long n = count();
+        if (n == 0) return 0;
+
+        final long rank = Math.max(1, (long) Math.ceil(n * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max());
+            }
+        }
+
+        return max();
+    }
+
+    /**
+     * Returns the index of the bucket for the specified non-negative value.
+     * Bucket {@code i} holds the values that need exactly {@code i} bits.
+     *
+     * @param value  the value
+     * @return       the bucket index
+     */
+    private static int bucket(long value) {
+        return BUCKETS - Long.numberOfLeadingZeros(value);
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "count: %d, min: %d ns, mean: %d ns, p99: %d ns, max: %d ns",
+            count(), min(), mean(), percentile(99), max()
+        );
+    }
+}
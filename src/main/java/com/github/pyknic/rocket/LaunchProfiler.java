@@ -0,0 +1,368 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Built-in {@link RocketListener} that records a latency histogram for every
+ * phase and every action, and that can compute the critical path of a phase
+ * through its dependency graph based on the measured durations.
+ * <p>
+ * Every graph that is launched gets a profile of its own, so a phase that is
+ * launched both as a whole and for only some targets, or by several
+ * launchers that share the profiler, keeps separate measurements for each
+ * graph. The profile is looked up once before each phase, so the action
+ * callbacks usually only read a field.
+ * <p>
+ * Adding or removing an instance, or launching a new set of targets, creates
+ * a new graph. To not keep every replaced graph and its instances forever,
+ * the profiler only keeps the profiles of the {@value #RECENT} most recently
+ * launched graphs, and the most recent one of every phase.
+ * <p>
+ * Example usage:
+ * <pre>{@code
+ * LaunchProfiler profiler = new LaunchProfiler();
+ * Rocket<Phase> rocket = Rocket.builder(Phase.class)
+ *     .with(foo)
+ *     .with(bar)
+ *     .listener(profiler)
+ *     .build();
+ *
+ * rocket.launch(Phase.INIT);
+ * System.out.println(profiler.report());
+ * }</pre>
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+public final class LaunchProfiler implements RocketListener {
+
+    private static final int RECENT = 16;
+
+    private final Map<PhaseGraph, PhaseProfile> profiles; // Guarded by itself
+    private final ConcurrentMap<String, PhaseProfile> latest;
+    private volatile PhaseProfile last; // Nullable
+
+    public LaunchProfiler() {
+        this.profiles = new RecentProfiles();
+        this.latest   = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the names of all the phases that have been launched.
+     *
+     * @return  the phase names
+     */
+    public Set<String> phases() {
+        return unmodifiableSet(latest.keySet());
+    }
+
+    /**
+     * Returns the profile of the graph of the phase with the specified name
+     * that was launched most recently, or an empty {@code Optional} if the
+     * phase has not been launched.
+     *
+     * @param phase  the phase name
+     * @return       the profile, if any
+     */
+    public Optional<PhaseProfile> profile(String phase) {
+        return Optional.ofNullable(latest.get(phase));
+    }
+
+    /**
+     * Returns the profile of the specified graph, or an empty
+     * {@code Optional} if it has not been launched or if its profile is no
+     * longer kept.
+     *
+     * @param graph  the graph
+     * @return       the profile, if any
+     */
+    public Optional<PhaseProfile> profile(PhaseGraph graph) {
+        final PhaseProfile recent;
+        synchronized (profiles) {
+            recent = profiles.get(graph);
+        }
+
+        if (recent != null) return Optional.of(recent);
+
+        final PhaseProfile latest = this.latest.get(graph.phase());
+        return latest != null && latest.graph == graph
+            ? Optional.of(latest) : Optional.empty();
+    }
+
+    /**
+     * Returns a human readable report with the latencies and the critical
+     * path of every graph that the profiler still keeps a profile of, with
+     * the most recently launched graph last.
+     *
+     * @return  the report
+     */
+    public String report() {
+        final List<PhaseProfile> reported;
+        synchronized (profiles) {
+            reported = new ArrayList<>(profiles.values());
+        }
+
+        for (final PhaseProfile profile : latest.values()) {
+            if (!reported.contains(profile)) reported.add(0, profile);
+        }
+
+        final StringBuilder str = new StringBuilder();
+        reported.forEach(p -> p.report(str));
+        return str.toString();
+    }
+
+    @Override
+    public void beforePhase(PhaseGraph phase) {
+        PhaseProfile profile;
+        synchronized (profiles) {
+            profile = profiles.get(phase);
+            if (profile == null) {
+                profile = recover(phase);
+                profiles.put(phase, profile);
+            }
+        }
+
+        if (latest.get(phase.phase()) != profile) {
+            latest.put(phase.phase(), profile);
+        }
+
+        last = profile;
+    }
+
+    @Override
+    public void afterPhase(PhaseGraph phase, long nanos) {
+        resolve(phase).phase.record(nanos);
+    }
+
+    @Override
+    public void phaseFailed(PhaseGraph phase, long nanos, Throwable cause) {
+        resolve(phase).failures.incrementAndGet();
+    }
+
+    @Override
+    public void afterAction(PhaseGraph phase, int action, long nanos) {
+        resolve(phase).actions[action].record(nanos);
+    }
+
+    @Override
+    public void actionFailed(PhaseGraph phase, int action,
+                             long nanos, Throwable cause) {
+        resolve(phase).actionFailures.incrementAndGet();
+    }
+
+    private PhaseProfile resolve(PhaseGraph graph) {
+        // Unless several graphs are launched at the same time, the profile
+        // is the one that was looked up before the phase.
+        final PhaseProfile cached = last;
+        if (cached != null && cached.graph == graph) return cached;
+
+        synchronized (profiles) {
+            PhaseProfile profile = profiles.get(graph);
+            if (profile == null) {
+                profile = recover(graph);
+                profiles.put(graph, profile);
+            }
+            return profile;
+        }
+    }
+
+    /**
+     * Returns the profile of a graph that is not among the recently launched
+     * ones. If it is still the latest graph of its phase, the profile is
+     * kept, and otherwise a new one is created.
+     *
+     * @param graph  the graph
+     * @return       the profile to use
+     */
+    private PhaseProfile recover(PhaseGraph graph) {
+        final PhaseProfile profile = latest.get(graph.phase());
+        return profile != null && profile.graph == graph
+            ? profile : new PhaseProfile(graph);
+    }
+
+    /**
+     * The profiles of the most recently launched graphs, with the least
+     * recently launched one first.
+     */
+    private static final class RecentProfiles
+    extends LinkedHashMap<PhaseGraph, PhaseProfile> {
+
+        private static final long serialVersionUID = 1L;
+
+        RecentProfiles() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<PhaseGraph, PhaseProfile> eldest) {
+            return size() > RECENT;
+        }
+    }
+
+    /**
+     * The measurements of a single phase.
+     */
+    public static final class PhaseProfile {
+
+        private final PhaseGraph graph;
+        private final LatencyHistogram phase;
+        private final LatencyHistogram[] actions;
+        private final AtomicLong failures;
+        private final AtomicLong actionFailures;
+
+        private PhaseProfile(PhaseGraph graph) {
+            this.graph          = requireNonNull(graph);
+            this.phase          = new LatencyHistogram();
+            this.actions        = new LatencyHistogram[graph.actionCount()];
+            this.failures       = new AtomicLong();
+            this.actionFailures = new AtomicLong();
+
+            for (int i = 0; i < actions.length; i++) {
+                actions[i] = new LatencyHistogram();
+            }
+        }
+
+        /**
+         * Returns the graph of the phase.
+         *
+         * @return  the graph
+         */
+        public PhaseGraph graph() {
+            return graph;
+        }
+
+        /**
+         * Returns the latencies of successful launches of the whole phase.
+         *
+         * @return  the phase latencies
+         */
+        public LatencyHistogram latency() {
+            return phase;
+        }
+
+        /**
+         * Returns the latencies of successful invocations of the action with
+         * the specified index.
+         *
+         * @param action  the action index
+         * @return        the action latencies
+         */
+        public LatencyHistogram latency(int action) {
+            return actions[action];
+        }
+
+        /**
+         * Returns the number of launches of this phase that failed.
+         *
+         * @return  the number of failed launches
+         */
+        public long failures() {
+            return failures.get();
+        }
+
+        /**
+         * Returns the number of action invocations in this phase that failed.
+         *
+         * @return  the number of failed invocations
+         */
+        public long actionFailures() {
+            return actionFailures.get();
+        }
+
+        /**
+         * Returns the indices of the actions on the critical path of the
+         * phase, which is the chain of dependent actions with the longest
+         * total mean duration. No matter how many threads the phase is
+         * launched on, it can't finish faster than this chain.
+         *
+         * @return  the action indices on the critical path, in launch order
+         */
+        public int[] criticalPath() {
+            final int n = graph.actionCount();
+            if (n == 0) return new int[0];
+
+            // Since the actions are in topological order, the longest chain
+            // ending in every action can be computed in a single pass.
+            final long[] finish = new long[n];
+            final int[] previous = new int[n];
+            int last = 0;
+
+            for (int i = 0; i < n; i++) {
+                previous[i] = -1;
+                for (final int dep : graph.dependenciesOf(i)) {
+                    if (previous[i] < 0 || finish[dep] > finish[previous[i]]) {
+                        previous[i] = dep;
+                    }
+                }
+
+                finish[i] = actions[i].mean()
+                    + (previous[i] < 0 ? 0 : finish[previous[i]]);
+
+                if (finish[i] > finish[last]) last = i;
+            }
+
+            int length = 0;
+            for (int i = last; i >= 0; i = previous[i]) length++;
+
+            final int[] path = new int[length];
+            for (int i = last; i >= 0; i = previous[i]) path[--length] = i;
+            return path;
+        }
+
+        /**
+         * Returns the sum of the mean durations of the actions on the
+         * {@link #criticalPath() critical path}.
+         *
+         * @return  the critical path length in nanoseconds
+         */
+        public long criticalPathNanos() {
+            long total = 0;
+            for (final int action : criticalPath()) {
+                total += actions[action].mean();
+            }
+            return total;
+        }
+
+        private void report(StringBuilder str) {
+            str.append(graph.phase()).append(" (").append(phase).append(")\n");
+            for (int i = 0; i < actions.length; i++) {
+                str.append("  ").append(graph.actionName(i))
+                   .append(" (").append(actions[i]).append(")\n");
+            }
+
+            str.append("  Critical path (")
+               .append(criticalPathNanos()).append(" ns):\n");
+            for (final int action : criticalPath()) {
+                str.append("    ").append(graph.actionName(action)).append('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.IntToLongFunction;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Static analysis of the {@link PhaseGraph} of a phase that shows how much
+ * parallelism the phase has. Every action is placed on a level, which is the
+ * number of actions in the longest chain of dependencies leading up to it.
+ * The actions on the same level do not depend on each other and could
+ * therefore be invoked at the same time.
+ * <p>
+ * If the analysis is given the measured durations of the actions, for an
+ * example from a {@link LaunchProfiler}, the longest chain is the one with
+ * the longest total duration, and the durations are included when the graph
+ * is exported. Otherwise every action is counted as taking one unit of time.
+ * <p>
+ * Example usage:
+ * <pre>{@code
+ * PhaseAnalysis analysis = PhaseAnalysis.of(rocket.graph(Phase.INIT));
+ * System.out.println(analysis);
+ * Files.write(Paths.get("init.dot"), analysis.toDot().getBytes(UTF_8));
+ * }</pre>
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+public final class PhaseAnalysis {
+
+    private final PhaseGraph graph;
+    private final long[] durations; // Null if not timed
+    private final int[] levels;
+    private final int[] widths;
+    private final int[] longestChain;
+
+    /**
+     * Analyzes the specified graph, counting every action as taking one unit
+     * of time.
+     *
+     * @param graph  the graph to analyze
+     * @return       the analysis
+     */
+    public static PhaseAnalysis of(PhaseGraph graph) {
+        return new PhaseAnalysis(graph, null);
+    }
+
+    /**
+     * Analyzes the specified graph using the specified durations of the
+     * actions.
+     *
+     * @param graph      the graph to analyze
+     * @param durations  function from action index to the duration of the
+     *                   action in nanoseconds
+     * @return           the analysis
+     */
+    public static PhaseAnalysis of(PhaseGraph graph, IntToLongFunction durations) {
+        final long[] nanos = new long[graph.actionCount()];
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = durations.applyAsLong(i);
+        }
+        return new PhaseAnalysis(graph, nanos);
+    }
+
+    /**
+     * Analyzes the graph of a profiled phase using the mean duration of every
+     * action.
+     *
+     * @param profile  the profile of the phase
+     * @return         the analysis
+     */
+    public static PhaseAnalysis of(LaunchProfiler.PhaseProfile profile) {
+        return of(profile.graph(), i -> profile.latency(i).mean());
+    }
+
+    private PhaseAnalysis(PhaseGraph graph, long[] durations) {
+        this.graph     = requireNonNull(graph);
+        this.durations = durations;
+
+        // Since the actions are in topological order, the level of every
+        // action and the longest chain ending in it can be computed in a
+        // single pass.
+        final int n = graph.actionCount();
+        final long[] finish = new long[n];
+        final int[] previous = new int[n];
+        this.levels = new int[n];
+        int depth = 0, last = -1;
+
+        for (int i = 0; i < n; i++) {
+            previous[i] = -1;
+            for (final int dep : graph.dependenciesOf(i)) {
+                levels[i] = Math.max(levels[i], levels[dep] + 1);
+                if (previous[i] < 0 || finish[dep] > finish[previous[i]]) {
+                    previous[i] = dep;
+                }
+            }
+
+            finish[i] = weight(i) + (previous[i] < 0 ? 0 : finish[previous[i]]);
+            depth = Math.max(depth, levels[i] + 1);
+            if (last < 0 || finish[i] > finish[last]) last = i;
+        }
+
+        this.widths = new int[depth];
+        for (final int level : levels) widths[level]++;
+
+        int length = 0;
+        for (int i = last; i >= 0; i = previous[i]) length++;
+
+        this.longestChain = new int[length];
+        for (int i = last; i >= 0; i = previous[i]) longestChain[--length] = i;
+    }
+
+    /**
+     * Returns the analyzed graph.
+     *
+     * @return  the graph
+     */
+    public PhaseGraph graph() {
+        return graph;
+    }
+
+    /**
+     * Returns {@code true} if the analysis was given the durations of the
+     * actions.
+     *
+     * @return  if the actions are timed
+     */
+    public boolean isTimed() {
+        return durations != null;
+    }
+
+    /**
+     * Returns the duration of the action with the specified index, or
+     * {@code 0} if the analysis is not {@link #isTimed() timed}.
+     *
+     * @param action  the action index
+     * @return        the duration in nanoseconds
+     */
+    public long duration(int action) {
+        return durations == null ? 0 : durations[action];
+    }
+
+    /**
+     * Returns the level of the action with the specified index. Actions
+     * without dependencies are on level {@code 0}, and every other action is
+     * on the level after the highest level of its dependencies.
+     *
+     * @param action  the action index
+     * @return        the level
+     */
+    public int level(int action) {
+        return levels[action];
+    }
+
+    /**
+     * Returns the number of levels in the graph, which is the number of
+     * actions in the longest chain of dependencies.
+     *
+     * @return  the depth
+     */
+    public int depth() {
+        return widths.length;
+    }
+
+    /**
+     * Returns the number of actions on every level, which is the number of
+     * actions that could be invoked at the same time if every action took
+     * equally long.
+     *
+     * @return  the width of each level
+     */
+    public int[] widths() {
+        return widths.clone();
+    }
+
+    /**
+     * Returns the indices of the actions in the longest chain of dependent
+     * actions. If the analysis is {@link #isTimed() timed}, this is the chain
+     * with the longest total duration, which is the critical path of the
+     * phase. Otherwise it is the chain with the most actions.
+     *
+     * @return  the action indices in the longest chain, in launch order
+     */
+    public int[] longestChain() {
+        return longestChain.clone();
+    }
+
+    /**
+     * Returns the ratio between the total duration of every action and the
+     * duration of the {@link #longestChain() longest chain}. This is the
+     * highest speedup that launching the phase in parallel could give, no
+     * matter how many threads are used.
+     *
+     * @return  the available parallelism, or {@code 0} for an empty graph
+     */
+    public double parallelism() {
+        long total = 0, chain = 0;
+        for (int i = 0; i < levels.length; i++) total += weight(i);
+        for (final int action : longestChain) chain += weight(action);
+        return chain == 0 ? 0 : (double) total / chain;
+    }
+
+    /**
+     * Returns the indices of the actions with the most dependencies, in
+     * descending order by the number of dependencies. Actions with the same
+     * number of dependencies are ordered by index.
+     *
+     * @param limit  the maximum number of actions to return
+     * @return       the action indices
+     */
+    public int[] highestFanIn(int limit) {
+        final int[] fanIn = new int[levels.length];
+        for (int i = 0; i < fanIn.length; i++) {
+            fanIn[i] = graph.dependenciesOf(i).length;
+        }
+
+        return IntStream.range(0, fanIn.length)
+            .boxed()
+            .sorted((a, b) -> fanIn[a] != fanIn[b]
+                ? Integer.compare(fanIn[b], fanIn[a])
+                : Integer.compare(a, b))
+            .limit(limit)
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+
+    /**
+     * Exports the graph in the DOT format used by Graphviz. There is an edge
+     * from every action to the actions that depend on it, the actions are
+     * ranked by level and the longest chain is drawn in bold.
+     *
+     * @return  the graph in DOT format
+     */
+    public String toDot() {
+        final boolean[] onChain = new boolean[levels.length];
+        for (final int action : longestChain) onChain[action] = true;
+
+        final StringBuilder str = new StringBuilder("digraph ")
+            .append(dot(graph.phase())).append(" {\n")
+            .append("  node [shape=box];\n");
+
+        for (int i = 0; i < levels.length; i++) {
+            str.append("  a").append(i).append(" [label=")
+               .append(dot(graph.actionName(i) + (durations == null
+                   ? "" : "\n" + micros(durations[i]))));
+            if (onChain[i]) str.append(", style=bold");
+            str.append("];\n");
+        }
+
+        for (int level = 0; level < widths.length; level++) {
+            str.append("  { rank=same;");
+            for (int i = 0; i < levels.length; i++) {
+                if (levels[i] == level) str.append(" a").append(i).append(';');
+            }
+            str.append(" }\n");
+        }
+
+        for (int i = 0; i < levels.length; i++) {
+            for (final int dependent : graph.dependentsOf(i)) {
+                str.append("  a").append(i).append(" -> a").append(dependent);
+                if (onChain[i] && onChain[dependent]) str.append(" [style=bold]");
+                str.append(";\n");
+            }
+        }
+
+        return str.append("}\n").toString();
+    }
+
+    /**
+     * Exports the graph and the analysis as JSON. The result is an object
+     * with the name of the phase, the depth, the width of every level, the
+     * longest chain and the available parallelism, together with an array of
+     * the actions with their level and dependencies. If the analysis is
+     * {@link #isTimed() timed}, every action also has its duration in
+     * nanoseconds.
+     *
+     * @return  the analysis in JSON format
+     */
+    public String toJson() {
+        final StringBuilder str = new StringBuilder("{\n")
+            .append("  \"phase\": ").append(json(graph.phase())).append(",\n")
+            .append("  \"depth\": ").append(depth()).append(",\n")
+            .append("  \"widths\": ").append(Arrays.toString(widths)).append(",\n")
+            .append("  \"longestChain\": ").append(Arrays.toString(longestChain)).append(",\n")
+            .append("  \"parallelism\": ")
+            .append(String.format(Locale.ROOT, "%.3f", parallelism())).append(",\n")
+            .append("  \"actions\": [");
+
+        for (int i = 0; i < levels.length; i++) {
+            str.append(i == 0 ? "\n" : ",\n")
+               .append("    {\"index\": ").append(i)
+               .append(", \"name\": ").append(json(graph.actionName(i)))
+               .append(", \"level\": ").append(levels[i])
+               .append(", \"dependencies\": ")
+               .append(Arrays.toString(graph.dependenciesOf(i)));
+            if (durations != null) {
+                str.append(", \"nanos\": ").append(durations[i]);
+            }
+            str.append('}');
+        }
+
+        return str.append(levels.length == 0 ? "]\n" : "\n  ]\n")
+            .append("}\n").toString();
+    }
+
+    /**
+     * Returns a human readable summary of the analysis.
+     *
+     * @return  the summary
+     */
+    @Override
+    public String toString() {
+        final StringBuilder str = new StringBuilder(graph.phase())
+            .append(" (").append(levels.length).append(" actions, ")
+            .append(depth()).append(" levels, parallelism ")
+            .append(String.format(Locale.ROOT, "%.2f", parallelism()))
+            .append(")\n  Widths: ").append(Arrays.toString(widths))
+            .append("\n  Longest chain:\n");
+
+        for (final int action : longestChain) {
+            str.append("    ").append(graph.actionName(action));
+            if (durations != null) {
+                str.append(" (").append(micros(durations[action])).append(')');
+            }
+            str.append('\n');
+        }
+
+        str.append("  Highest fan-in:\n");
+        for (final int action : highestFanIn(5)) {
+            str.append("    ").append(graph.actionName(action)).append(" (")
+               .append(graph.dependenciesOf(action).length).append(")\n");
+        }
+
+        return str.toString();
+    }
+
+    private long weight(int action) {
+        return durations == null ? 1 : durations[action];
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1f us", nanos / 1_000.0);
+    }
+
+    /**
+     * Returns the specified string as a quoted DOT string. Line breaks are
+     * kept as DOT escapes, and other control characters and ampersands are
+     * written as HTML entities, since DOT has no other way to escape them.
+     * Everything else is written as it is, since DOT files are UTF-8.
+     *
+     * @param value  the string
+     * @return       the quoted string
+     */
+    private static String dot(String value) {
+        final StringBuilder str = new StringBuilder("\"");
+        for (final char c : value.toCharArray()) {
+            switch (c) {
+                case '"'  : str.append("\\\""); break;
+                case '\\' : str.append("\\\\"); break;
+                case '\n' : str.append("\\n"); break;
+                case '\r' : str.append("\\r"); break;
+                case '&'  : str.append("&amp;"); break;
+                default   :
+                    if (c < 0x20 || c == 0x7f) {
+                        str.append("&#").append((int) c).append(';');
+                    } else {
+                        str.append(c);
+                    }
+            }
+        }
+        return str.append('"').toString();
+    }
+
+    /**
+     * Returns the specified string as a quoted JSON string literal.
+     *
+     * @param value  the string
+     * @return       the quoted string
+     */
+    private static String json(String value) {
+        final StringBuilder str = new StringBuilder("\"");
+        for (final char c : value.toCharArray()) {
+            switch (c) {
+                case '"'  : str.append("\\\""); break;
+                case '\\' : str.append("\\\\"); break;
+                case '\n' : str.append("\\n"); break;
+                case '\r' : str.append("\\r"); break;
+                case '\t' : str.append("\\t"); break;
+                default   :
+                    if (c < 0x20) {
+                        str.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        str.append(c);
+                    }
+            }
+        }
+        return str.append('"').toString();
+    }
+}
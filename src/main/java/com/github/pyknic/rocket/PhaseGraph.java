@@ -0,0 +1,69 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket;
+
+/**
+ * Read-only view of the resolved actions of a phase and the dependencies
+ * between them. Actions are identified by their index in the sequential
+ * launch order, which is always a valid topological order of the graph.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+public interface PhaseGraph {
+
+    /**
+     * Returns the name of the phase.
+     *
+     * @return  the phase name
+     */
+    String phase();
+
+    /**
+     * Returns the number of actions in the phase.
+     *
+     * @return  the number of actions
+     */
+    int actionCount();
+
+    /**
+     * Returns the display name of the action with the specified index, on
+     * the form {@code Class#method(ParamType, ParamType)}.
+     *
+     * @param action  the action index
+     * @return        the display name
+     */
+    String actionName(int action);
+
+    /**
+     * Returns the indices of the actions that must finish before the action
+     * with the specified index can be invoked.
+     *
+     * @param action  the action index
+     * @return        indices of the dependencies, in ascending order
+     */
+    int[] dependenciesOf(int action);
+
+    /**
+     * Returns the indices of the actions that can't be invoked until the
+     * action with the specified index has finished.
+     *
+     * @param action  the action index
+     * @return        indices of the dependents, in ascending order
+     */
+    int[] dependentsOf(int action);
+}
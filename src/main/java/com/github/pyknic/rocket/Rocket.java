@@ -18,6 +18,8 @@ package com.github.pyknic.rocket;
 
 import com.github.pyknic.rocket.internal.RocketBuilderImpl;
 
+import java.util.concurrent.CompletionStage;
+
 /**
  * Rocker Launcher system.
  *
@@ -41,9 +43,194 @@ public interface Rocket<E extends Enum<E>> {
 
     /**
      * Invoke all the methods as part of the specified phase.
+     * <p>
+     * Launches may be made from several threads at the same time. If the
+     * phase is already being launched by another thread, it is not launched
+     * again. Instead, this waits for the running launch to finish and then
+     * returns, or throws the same exception if it failed. Phases that invoke
+     * methods on a common instance are launched one at a time, while phases
+     * without any instances in common run concurrently. The same applies to
+     * every other kind of launch. A launch made from inside an action is
+     * nested in the launch that invoked the action, regardless of which
+     * thread it is invoked on. A nested launch is not coordinated, and its
+     * methods are invoked in order on the thread that invoked the action, so
+     * it never waits for a thread that is busy with the outer launch.
      *
      * @param phase  the phase to invoke
      */
     void launch(E phase);
 
+    /**
+     * Invoke only the methods on the specified instances as part of the
+     * specified phase, together with every method that they depend on,
+     * directly or indirectly. Other methods in the phase are not invoked.
+     * <p>
+     * The set of methods to invoke is computed the first time a particular
+     * set of targets is launched and then reused, so repeated launches of
+     * the same targets, in any order, are as fast as launching the whole
+     * phase.
+     *
+     * @param phase    the phase to invoke
+     * @param targets  the instances that should reach the phase, compared by
+     *                 identity
+     *
+     * @throws RocketException  if some target is not installed
+     *
+     * @since 1.1.0
+     */
+    void launch(E phase, Object... targets);
+
+    /**
+     * Invoke only the methods on instances of the specified classes as part
+     * of the specified phase, together with every method that they depend
+     * on, directly or indirectly. Other methods in the phase are not invoked.
+     *
+     * @param phase    the phase to invoke
+     * @param targets  the classes of the instances that should reach the
+     *                 phase
+     *
+     * @throws RocketException  if no instance of some class is installed
+     *
+     * @see #launch(Enum, Object...)
+     * @since 1.1.0
+     */
+    void launch(E phase, Class<?>... targets);
+
+    /**
+     * Returns the resolved actions of the specified phase and the
+     * dependencies between them, compiling the phase first if it has not
+     * been compiled yet. The graph can be inspected using
+     * {@link PhaseAnalysis}. If instances are added or removed later, the
+     * returned graph is not affected.
+     *
+     * @param phase  the phase
+     * @return       the graph of the phase
+     *
+     * @see PhaseAnalysis#of(PhaseGraph)
+     * @since 1.1.0
+     */
+    PhaseGraph graph(E phase);
+
+    /**
+     * Compiles the plans of the specified phases if they have not been
+     * compiled yet, so that the first launch of them is not delayed. If no
+     * phases are specified, every phase is compiled. This only has an effect
+     * if the builder was set to {@link RocketBuilder#lazy() lazy}.
+     *
+     * @param phases  the phases to prepare
+     *
+     * @since 1.1.0
+     */
+    @SuppressWarnings("unchecked")
+    void prepare(E... phases);
+
+    /**
+     * Invoke all the methods as part of the specified phases, in the order
+     * they are given. If an executor has been set in the builder, the phases
+     * are launched as one combined graph without waiting for every action in
+     * a phase to finish before the next phase begins. Instead, an action is
+     * started once the actions that its arguments depend on in the same
+     * phase have finished, and once its own instance and the instances of
+     * its arguments are done with all the earlier phases.
+     * <p>
+     * If no executor has been set, this is the same as launching the phases
+     * one at a time.
+     *
+     * @param phases  the phases to invoke
+     *
+     * @since 1.1.0
+     */
+    @SuppressWarnings("unchecked")
+    void launchSequence(E... phases);
+
+    /**
+     * Invoke all the methods as part of every phase from the first one up to
+     * and including the specified one, in the order the phases are declared
+     * in the enum. This is the same as calling
+     * {@link #launchSequence(Enum[])} with those phases.
+     *
+     * @param last  the last phase to invoke
+     *
+     * @since 1.1.0
+     */
+    void launchThrough(E last);
+
+    /**
+     * Starts invoking all the methods as part of the specified phase without
+     * blocking the calling thread. Every action is started once the actions
+     * that its arguments depend on have finished. If an annotated method
+     * returns a {@link CompletionStage}, that action is not considered
+     * finished until the stage has completed, so a slow asynchronous action
+     * only delays the actions that depend on it.
+     * <p>
+     * If the phase fails, the returned stage is completed exceptionally with
+     * a {@link RocketException}. If the phase is already being launched, the
+     * returned stage is completed when that launch has finished, and if a
+     * phase with an instance in common is running, the launch is started
+     * once it has finished.
+     *
+     * @param phase  the phase to invoke
+     * @return       stage that is completed when every action has finished
+     *
+     * @since 1.1.0
+     */
+    CompletionStage<Void> launchAsync(E phase);
+
+    /**
+     * Creates a {@link TickLoop} that launches the specified phase repeatedly
+     * at a fixed rate. The loop is not started until
+     * {@link TickLoop#run()} is called.
+     * <p>
+     * If no executor or listener has been set in the builder, launching a
+     * phase does not allocate any memory, so the loop can run for a long
+     * time without producing garbage.
+     *
+     * @param phase  the phase to launch every tick
+     * @param rate   the number of ticks per second
+     * @return       the new loop
+     *
+     * @throws IllegalArgumentException  if the rate is not a positive number
+     *
+     * @since 1.1.0
+     */
+    TickLoop loop(E phase, double rate);
+
+    /**
+     * Installs the specified instance in this launcher, as if it had been
+     * added last to the {@link RocketBuilder}. Only the phases where the
+     * instance has annotated methods are updated, and only from the point
+     * where the new methods could first be invoked.
+     * <p>
+     * The new plans are published atomically once every phase has been
+     * updated. Launches that are already running are not affected, and if
+     * the update fails, the launcher is left unchanged.
+     *
+     * @param instance  the instance to add
+     *
+     * @throws RocketException  if the new instance makes it impossible to
+     *                          resolve the dependencies of some phase
+     *
+     * @since 1.1.0
+     */
+    void add(Object instance);
+
+    /**
+     * Uninstalls the specified instance from this launcher. Methods that had
+     * the instance as an argument are given the next installed instance of
+     * the same type instead. Instances are compared by identity.
+     * <p>
+     * The new plans are published atomically once every phase has been
+     * updated. Launches that are already running are not affected, and if
+     * the update fails, the launcher is left unchanged.
+     *
+     * @param instance  the instance to remove
+     * @return          {@code true} if the instance was installed
+     *
+     * @throws RocketException  if removing the instance makes it impossible
+     *                          to resolve the dependencies of some phase
+     *
+     * @since 1.1.0
+     */
+    boolean remove(Object instance);
+
 }
@@ -16,6 +16,9 @@
  */
 package com.github.pyknic.rocket;
 
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+
 /**
  * Builder for the {@link Rocket} interface.
  *
@@ -36,6 +39,166 @@ public interface RocketBuilder<E extends Enum<E>> {
      */
     <T> RocketBuilder<E> with(T instance);
 
+    /**
+     * Sets the {@link Executor} that actions should be launched on. If an
+     * executor is set, the actions of a phase are invoked in parallel, each
+     * action starting as soon as the actions that its arguments depend on
+     * have finished. Two actions on the same instance are never invoked at
+     * the same time. The {@link Rocket#launch(Enum)}-method will still block
+     * until every action in the phase has finished.
+     * <p>
+     * If no executor is set, all actions are invoked sequentially on the
+     * thread calling {@link Rocket#launch(Enum)}.
+     *
+     * @param executor  the executor to launch actions on
+     * @return          a reference to this builder
+     *
+     * @since 1.1.0
+     */
+    RocketBuilder<E> executor(Executor executor);
+
+    /**
+     * Sets the {@link Executor} that actions marked as
+     * {@link Execute#blocking() blocking} should be invoked on when a phase
+     * is launched in parallel or asynchronously. They are still invoked in
+     * the same order with respect to their dependencies, but never occupy
+     * the threads of the {@link #executor(Executor) executor} that the other
+     * actions are invoked on, so a slow blocking call does not starve the
+     * CPU-bound actions. This executor should therefore be able to run many
+     * tasks at the same time.
+     * <p>
+     * By default, blocking actions are invoked on a shared pool of daemon
+     * threads that grows as needed. On Java 21 or later, an executor that
+     * starts a new virtual thread for every task is a good alternative.
+     *
+     * @param executor  the executor to launch blocking actions on
+     * @return          a reference to this builder
+     *
+     * @since 1.1.0
+     */
+    RocketBuilder<E> blockingExecutor(Executor executor);
+
+    /**
+     * Makes the built {@link Rocket} launch phases in parallel on a fixed
+     * number of dedicated worker threads, where every installed instance is
+     * owned by one of the workers. All the actions on an instance are
+     * invoked by the worker that owns it, so a phase that is launched
+     * repeatedly touches each component from the same thread every time,
+     * which keeps its state in the cache of that core. Actions are only
+     * handed over to another worker when they depend on an action on an
+     * instance owned by it.
+     * <p>
+     * The instances are balanced between the workers by the measured
+     * duration of their actions. The ownership may change during the first
+     * launches of a phase while the durations are being measured, after
+     * which it stays fixed. The worker threads are started when they are
+     * first needed and are stopped once they have been idle for a while.
+     * <p>
+     * If this is set, it is used instead of the {@link #executor(Executor)}
+     * for every launch except {@link Rocket#launchAsync(Enum)}.
+     *
+     * @param workers  the number of worker threads
+     * @return         a reference to this builder
+     *
+     * @throws IllegalArgumentException  if the number of workers is not
+     *                                   positive
+     *
+     * @since 1.1.0
+     */
+    RocketBuilder<E> affinity(int workers);
+
+    /**
+     * Adds a listener that is notified before and after every phase and
+     * every action is launched. Listeners are notified in the order they were
+     * added.
+     *
+     * @param listener  the listener to add
+     * @return          a reference to this builder
+     *
+     * @see LaunchProfiler
+     * @since 1.1.0
+     */
+    RocketBuilder<E> listener(RocketListener listener);
+
+    /**
+     * Makes the built {@link Rocket} compile the plan for each phase the
+     * first time the phase is launched, instead of compiling every phase in
+     * {@link #build()}. The dependencies are still validated when building,
+     * so an impossible phase is reported right away, but the actions are not
+     * ordered and bound to their arguments until they are needed. This makes
+     * building faster if the phases enum has many phases that are rarely
+     * launched.
+     * <p>
+     * Phases can be compiled ahead of time using
+     * {@link Rocket#prepare(Enum[])}.
+     *
+     * @return  a reference to this builder
+     *
+     * @since 1.1.0
+     */
+    RocketBuilder<E> lazy();
+
+    /**
+     * Makes {@link #build()} scan the installed instances and compile the
+     * phases concurrently in the common {@link java.util.concurrent.ForkJoinPool},
+     * which makes building faster when thousands of instances are installed.
+     * The built {@link Rocket} is exactly the same as if it was built
+     * sequentially, with every action in the same order.
+     *
+     * @return  a reference to this builder
+     *
+     * @since 1.1.0
+     */
+    RocketBuilder<E> parallelBuild();
+
+    /**
+     * Makes the built {@link Rocket} group the installed instances by class,
+     * so that each annotated method becomes a single action for every
+     * instance of the class instead of one action per instance. Since
+     * arguments are resolved by type, every instance in a group is bound to
+     * the same arguments. This makes the phases much smaller, and building
+     * much faster, when thousands of instances of the same few classes are
+     * installed.
+     * <p>
+     * The action of a group invokes the method on every instance in the
+     * order they were installed, but groups larger than 1024 instances are
+     * split into chunks that are invoked in parallel in the
+     * {@link java.util.concurrent.ForkJoinPool} of the launching thread, or
+     * the common pool. Methods that are marked as
+     * {@link Execute#blocking() blocking} are never split. A group is placed
+     * in the phase where the first instance of the class would have been,
+     * and anything that depends on the class waits for the whole group.
+     * <p>
+     * Launching only some instances using
+     * {@link Rocket#launch(Enum, Object...)} launches the whole group of
+     * each targeted instance. Adding or removing an instance compiles every
+     * phase that has been compiled again, and the {@link #planCache(Path)
+     * plan cache} is not used.
+     *
+     * @return  a reference to this builder
+     *
+     * @since 1.1.0
+     */
+    RocketBuilder<E> bulk();
+
+    /**
+     * Sets a file where the resolved plans should be cached between runs.
+     * When building, the file is read if it exists and was created for the
+     * same phases and the same classes installed in the same order, in which
+     * case the order of the actions and their arguments are taken from the
+     * file instead of being resolved again. Otherwise, the plans are built
+     * as usual and written to the file.
+     * <p>
+     * If this is combined with {@link #lazy()}, every phase is still
+     * compiled when the file has to be written.
+     *
+     * @param file  the cache file
+     * @return      a reference to this builder
+     *
+     * @since 1.1.0
+     */
+    RocketBuilder<E> planCache(Path file);
+
     /**
      * Builds the {@link Rocket} instance, resolving all the dependencies.
      *
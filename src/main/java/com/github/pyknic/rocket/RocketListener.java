@@ -0,0 +1,115 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket;
+
+/**
+ * Listener that is notified when phases are compiled and when phases and
+ * actions are launched. Listeners are registered using
+ * {@link RocketBuilder#listener(RocketListener)}. If no listener is
+ * registered, no timing is measured at all.
+ * <p>
+ * When actions are launched in parallel, the action callbacks may be invoked
+ * concurrently from several threads, and so may the compile callbacks if the
+ * Rocket is built in parallel. Any exception thrown by a listener is treated
+ * as a failure of the phase or action it was notified about.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+public interface RocketListener {
+
+    /**
+     * Called before the plan of a phase is compiled. This happens when the
+     * Rocket is built, or the first time the phase is needed if the Rocket
+     * is lazy. Phases that are loaded from a plan cache or updated because
+     * an instance was added or removed are not reported.
+     *
+     * @param phase  the name of the phase
+     */
+    default void beforeCompile(String phase) {}
+
+    /**
+     * Called when the plan of a phase has been compiled.
+     *
+     * @param phase  the compiled phase
+     * @param nanos  the time it took, in nanoseconds
+     */
+    default void afterCompile(PhaseGraph phase, long nanos) {}
+
+    /**
+     * Called when the plan of a phase could not be compiled.
+     *
+     * @param phase  the name of the phase
+     * @param nanos  the time until it failed, in nanoseconds
+     * @param cause  the reason it failed
+     */
+    default void compileFailed(String phase, long nanos, Throwable cause) {}
+
+    /**
+     * Called before the first action of a phase is invoked.
+     *
+     * @param phase  the phase that is launched
+     */
+    default void beforePhase(PhaseGraph phase) {}
+
+    /**
+     * Called once every action of a phase has finished successfully.
+     *
+     * @param phase  the phase that was launched
+     * @param nanos  the time it took, in nanoseconds
+     */
+    default void afterPhase(PhaseGraph phase, long nanos) {}
+
+    /**
+     * Called when a phase has failed and no more actions are running.
+     *
+     * @param phase  the phase that was launched
+     * @param nanos  the time it took, in nanoseconds
+     * @param cause  the reason it failed
+     */
+    default void phaseFailed(PhaseGraph phase, long nanos, Throwable cause) {}
+
+    /**
+     * Called before an action is invoked.
+     *
+     * @param phase   the phase that is launched
+     * @param action  the index of the action in the phase
+     */
+    default void beforeAction(PhaseGraph phase, int action) {}
+
+    /**
+     * Called when an action has finished successfully. If the annotated
+     * method returned a {@link java.util.concurrent.CompletionStage}, this is
+     * called when the stage has completed.
+     *
+     * @param phase   the phase that is launched
+     * @param action  the index of the action in the phase
+     * @param nanos   the time the action took, in nanoseconds
+     */
+    default void afterAction(PhaseGraph phase, int action, long nanos) {}
+
+    /**
+     * Called when an action has failed.
+     *
+     * @param phase   the phase that is launched
+     * @param action  the index of the action in the phase
+     * @param nanos   the time until the action failed, in nanoseconds
+     * @param cause   the reason it failed
+     */
+    default void actionFailed(PhaseGraph phase, int action,
+                              long nanos, Throwable cause) {}
+}
@@ -0,0 +1,105 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Driver that launches a single phase repeatedly at a fixed rate, for an
+ * example to use an {@code UPDATE}-phase as the tick of a game or a
+ * simulation. Instances are created using
+ * {@link Rocket#loop(Enum, double)}.
+ * <p>
+ * The loop is not started until {@link #run()} is called, which blocks the
+ * calling thread until {@link #stop()} is called, the thread is interrupted
+ * or a launch fails. To run the loop in the background, pass it to a
+ * {@code Thread} or an executor.
+ * <p>
+ * Ticks are scheduled at a fixed rate relative to when the loop was started.
+ * If a tick does not finish before the next one is due, it is counted as an
+ * overrun. The next tick is then started immediately, and any further ticks
+ * that were due in the meantime are skipped instead of being launched back
+ * to back to catch up.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+public interface TickLoop extends Runnable {
+
+    /**
+     * Launches the phase once every period until {@link #stop()} is called or
+     * the calling thread is interrupted. If a launch throws an exception, the
+     * loop is stopped and the exception is rethrown. If the loop has already
+     * been stopped, this method returns immediately.
+     *
+     * @throws IllegalStateException  if the loop is already running
+     */
+    @Override
+    void run();
+
+    /**
+     * Stops the loop. If a tick is currently running, it is allowed to
+     * finish. Once stopped, the loop can not be started again.
+     */
+    void stop();
+
+    /**
+     * Returns {@code true} if {@link #run()} is currently executing on some
+     * thread.
+     *
+     * @return  {@code true} if running, else {@code false}
+     */
+    boolean isRunning();
+
+    /**
+     * Returns the time between the start of two consecutive ticks.
+     *
+     * @param unit  the unit to return the period in
+     * @return      the period
+     */
+    long period(TimeUnit unit);
+
+    /**
+     * Returns the number of ticks that have been launched.
+     *
+     * @return  the number of ticks
+     */
+    long ticks();
+
+    /**
+     * Returns the number of ticks that took longer than the period.
+     *
+     * @return  the number of overruns
+     */
+    long overruns();
+
+    /**
+     * Returns the number of ticks that were skipped because a previous tick
+     * overran its period.
+     *
+     * @return  the number of skipped ticks
+     */
+    long skipped();
+
+    /**
+     * Returns the histogram of how long every tick took to launch.
+     *
+     * @return  the tick durations
+     */
+    LatencyHistogram tickTimes();
+
+}
@@ -0,0 +1,208 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.RocketException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A single annotated method bound to an instance and its arguments. If the
+ * method returns a {@link CompletionStage}, the action is not considered
+ * finished until that stage has completed.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+abstract class Action implements Runnable {
+
+    private final String name;
+    private final boolean blocking;
+    private final Object instance;
+    private final Object[] arguments;
+
+    Action(String name, boolean blocking, Object instance, Object[] arguments) {
+        this.name      = requireNonNull(name);
+        this.blocking  = blocking;
+        this.instance  = requireNonNull(instance);
+        this.arguments = requireNonNull(arguments);
+    }
+
+    /**
+     * Returns the display name of this action.
+     *
+     * @return  the name
+     */
+    final String name() {
+        return name;
+    }
+
+    /**
+     * Returns whether the method is marked as blocking, in which case it
+     * should not be invoked on the threads used for CPU-bound actions.
+     *
+     * @return  {@code true} if the method blocks
+     */
+    final boolean blocking() {
+        return blocking;
+    }
+
+    /**
+     * Returns the instance that the method is invoked on, or the first one
+     * if it is invoked on a group of instances.
+     *
+     * @return  the instance
+     */
+    final Object instance() {
+        return instance;
+    }
+
+    /**
+     * Returns {@code true} if the method is invoked on the specified
+     * instance. Unless the action invokes the method on a whole group of
+     * instances, that is only the instance returned by {@link #instance()}.
+     *
+     * @param instance  the instance to look for
+     * @return          {@code true} if invoked on it, else {@code false}
+     */
+    boolean isOn(Object instance) {
+        return this.instance == instance;
+    }
+
+    /**
+     * Returns every instance that the method is invoked on. Unless the
+     * action invokes the method on a whole group of instances, that is only
+     * the instance returned by {@link #instance()}. The returned array must
+     * not be modified.
+     *
+     * @return  the instances
+     */
+    Object[] instances() {
+        return new Object[] {instance};
+    }
+
+    /**
+     * Returns the arguments that the method is invoked with. The returned
+     * array must not be modified.
+     *
+     * @return  the arguments
+     */
+    final Object[] arguments() {
+        return arguments;
+    }
+
+    /**
+     * Invokes the method, returning whatever it returned.
+     *
+     * @return  the result of the method, or {@code null} if it is void
+     * @throws Throwable  anything thrown by the method
+     */
+    abstract Object call() throws Throwable;
+
+    /**
+     * Invokes the method without waiting for any returned stage to complete.
+     *
+     * @return  the stage returned by the method, or {@code null} if the
+     *          method did not return one
+     *
+     * @throws RocketException  if the method threw an exception
+     */
+    final CompletionStage<?> invoke() {
+        final Object result;
+        try {
+            result = call();
+        } catch (final Throwable ex) {
+            throw failure(ex);
+        }
+
+        return result instanceof CompletionStage
+            ? (CompletionStage<?>) result : null;
+    }
+
+    /**
+     * Invokes the method and returns a future that is completed when the
+     * action has finished. If the action fails, the future is completed
+     * exceptionally with a {@link RocketException}.
+     *
+     * @return  future for the completion of this action
+     */
+    final CompletableFuture<Void> invokeAsync() {
+        final CompletionStage<?> stage;
+        try {
+            stage = invoke();
+        } catch (final RocketException ex) {
+            final CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+            return failed;
+        }
+
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        if (stage == null) {
+            done.complete(null);
+        } else {
+            stage.whenComplete((result, ex) -> {
+                if (ex == null) {
+                    done.complete(null);
+                } else {
+                    done.completeExceptionally(failure(ex));
+                }
+            });
+        }
+
+        return done;
+    }
+
+    /**
+     * Invokes the method and blocks until any returned stage has completed.
+     *
+     * @throws RocketException  if the method or the stage failed
+     */
+    @Override
+    public final void run() {
+        final CompletionStage<?> stage = invoke();
+        if (stage != null) {
+            try {
+                stage.toCompletableFuture().join();
+            } catch (final RuntimeException ex) {
+                throw failure(ex);
+            }
+        }
+    }
+
+    /**
+     * Wraps an exception thrown by this action in a {@link RocketException}.
+     *
+     * @param ex  the thrown exception
+     * @return    the exception to rethrow
+     */
+    final RocketException failure(Throwable ex) {
+        final Throwable cause = ex instanceof CompletionException
+            && ex.getCause() != null ? ex.getCause() : ex;
+
+        return new RocketException(
+            "Could not invoke annotated method " + name + ".", cause);
+    }
+
+    @Override
+    public final String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.RocketException;
+import com.github.pyknic.rocket.internal.ClassMetadata.ExecuteMethod;
+
+import java.util.List;
+import java.util.Set;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An annotated method on a particular instance, or on a group of instances
+ * of the same class, that should become an {@link Action} in some phase.
+ * The arguments are resolved the first time the action is requested, so
+ * that a method that can never be invoked is reported as part of a
+ * dependency cycle rather than as a missing argument.
+ * <p>
+ * Makers are only used while a phase is being compiled. If two threads
+ * compile the same lazy phase at the same time, the action may be created
+ * twice, but both copies are equivalent and only one of the compiled
+ * phases is kept.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class ActionMaker {
+
+    private final Object instance;
+    private final Object[] group; // Nullable unless invoked on a group
+    private final ExecuteMethod method;
+    private final TypeIndex types; // Nullable if the action is given
+    private volatile Action action; // Created on first use
+
+    ActionMaker(Object instance, ExecuteMethod method, TypeIndex types) {
+        this(instance, null, method, types);
+    }
+
+    /**
+     * Creates a maker for invoking the method on every instance in a group
+     * of instances of the same class as a single {@link BulkInvoker}. The
+     * first instance in the group takes the place of the instance of a
+     * regular maker when the phase is compiled.
+     *
+     * @param group   the instances, in the order they were installed
+     * @param method  the method
+     * @param types   the index to resolve the arguments with
+     * @return        the maker
+     */
+    static ActionMaker group(Object[] group, ExecuteMethod method, TypeIndex types) {
+        return new ActionMaker(group[0], group, method, types);
+    }
+
+    private ActionMaker(Object instance,
+                        Object[] group,
+                        ExecuteMethod method,
+                        TypeIndex types) {
+
+        this.instance = requireNonNull(instance);
+        this.group    = group;
+        this.method   = requireNonNull(method);
+        this.types    = requireNonNull(types);
+    }
+
+    /**
+     * Creates a maker where the arguments have already been resolved, for an
+     * example when the plan was loaded from a cache.
+     *
+     * @param instance  the instance to invoke the method on
+     * @param method    the method
+     * @param action    the action
+     */
+    ActionMaker(Object instance, ExecuteMethod method, Action action) {
+        this.instance = requireNonNull(instance);
+        this.group    = null;
+        this.method   = requireNonNull(method);
+        this.types    = null;
+        this.action   = requireNonNull(action);
+    }
+
+    Object instance() {
+        return instance;
+    }
+
+    String name() {
+        return method.name();
+    }
+
+    ExecuteMethod method() {
+        return method;
+    }
+
+    /**
+     * Returns the distinct parameter types of the method.
+     *
+     * @return  the dependencies
+     */
+    Set<Class<?>> dependencies() {
+        return method.dependencies();
+    }
+
+    /**
+     * Returns the {@link TypeIds} of the distinct parameter types of the
+     * method. The returned array must not be modified.
+     *
+     * @return  ids of the dependencies
+     */
+    int[] dependencyIds() {
+        return method.dependencyIds();
+    }
+
+    /**
+     * Returns the action, resolving the arguments of the method the first
+     * time it is called.
+     *
+     * @return  the action
+     *
+     * @throws RocketException  if some argument can't be resolved
+     */
+    Action action() {
+        if (action == null) {
+            final List<Class<?>> params = method.parameterTypes();
+            final Object[] args = new Object[params.size()];
+
+            for (int i = 0; i < args.length; i++) {
+                final Class<?> c = params.get(i);
+                args[i] = types.get(c);
+                if (args[i] == null) {
+                    throw new RocketException(format(
+                        "Class '%s' has a method '%s' that has " +
+                        "the @Execute-annotation but one argument" +
+                        " '%s' can't be resolved. Make sure it " +
+                        "is installed in the RocketBuilder.",
+                        instance.getClass().getName(),
+                        method.methodName(),
+                        c.getName()
+                    ));
+                }
+            }
+
+            action = group == null
+                ? method.invoker(instance, args)
+                : method.bulkInvoker(group, args);
+        }
+
+        return action;
+    }
+
+    /**
+     * Returns {@code true} if the action of this maker has been created with
+     * the specified instance as one of its arguments.
+     *
+     * @param arg  the instance to look for
+     * @return     {@code true} if bound to it, else {@code false}
+     */
+    boolean isBoundTo(Object arg) {
+        if (action != null) {
+            for (final Object bound : action.arguments()) {
+                if (bound == arg) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a new maker for the same method and instance that resolves its
+     * arguments using the specified index instead.
+     *
+     * @param types  the new type index
+     * @return       the new maker
+     */
+    ActionMaker rebind(TypeIndex types) {
+        return new ActionMaker(instance, group, method, types);
+    }
+
+    @Override
+    public String toString() {
+        return method.name();
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.RocketListener;
+
+import java.util.concurrent.Executor;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A single launch of a {@link PhasePlan} on a set of {@link AffinityWorkers}.
+ * Every component instance is owned by one worker, and each action is
+ * submitted to the worker that owns its instance once all of its
+ * dependencies have finished. Work is thereby only handed over between
+ * workers along the dependency edges of the plan. Actions that are marked as
+ * blocking are invoked on the executor for blocking actions instead, so that
+ * they never hold up a worker.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class AffinityLaunch extends ConcurrentLaunch {
+
+    private final AffinityWorkers workers;
+    private final int[] assignment;
+
+    AffinityLaunch(PhasePlan plan,
+                   AffinityWorkers workers,
+                   Executor blocking,
+                   RocketListener listener) {
+
+        super(plan, blocking, listener);
+        this.workers    = requireNonNull(workers);
+        this.assignment = schedule.assignment(workers.size());
+    }
+
+    @Override
+    boolean enqueue(int index) {
+        if (plan.action(index).blocking()) {
+            execute(blocking, index);
+        } else {
+            workers.submit(assignment[index], this, index,
+                schedule.priority(index));
+        }
+        return false;
+    }
+
+    @Override
+    void flush(int count) {
+        // The workers start invoking actions as soon as they are enqueued.
+    }
+}
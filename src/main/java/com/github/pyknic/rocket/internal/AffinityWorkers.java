@@ -0,0 +1,208 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed number of workers that each own a thread and a queue of ready
+ * actions. Unlike a work-stealing pool, an action is only ever invoked by the
+ * worker it was submitted to, so the actions of a component that is always
+ * submitted to the same worker run on the same thread every launch.
+ * <p>
+ * The thread of a worker is started when the first action is submitted to
+ * it and stops after it has been idle for a minute, so a pool that is no
+ * longer used does not keep any threads alive. An idle thread also stops
+ * when it is interrupted. Either way, a new thread is started the next time
+ * an action is submitted to the worker.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class AffinityWorkers {
+
+    private static final long KEEP_ALIVE = TimeUnit.SECONDS.toNanos(60);
+    private static final AtomicInteger POOLS = new AtomicInteger();
+
+    private final Worker[] workers;
+
+    /**
+     * Creates a new set of workers.
+     *
+     * @param count  the number of workers
+     * @throws IllegalArgumentException  if the count is not positive
+     */
+    AffinityWorkers(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException(
+                "Expected at least one worker, but got " + count + ".");
+        }
+
+        final int pool = POOLS.incrementAndGet();
+        this.workers = new Worker[count];
+        for (int i = 0; i < count; i++) {
+            workers[i] = new Worker("rocket-affinity-" + pool + "-" + i);
+        }
+    }
+
+    /**
+     * Returns the number of workers.
+     *
+     * @return  the number of workers
+     */
+    int size() {
+        return workers.length;
+    }
+
+    /**
+     * Submits a ready action to a worker. Each worker invokes the action with
+     * the highest priority in its queue first.
+     *
+     * @param worker    the index of the worker
+     * @param launch    the launch that the action belongs to
+     * @param index     the index of the action in the launch
+     * @param priority  the priority of the action
+     */
+    void submit(int worker, ConcurrentLaunch launch, int index, long priority) {
+        workers[worker].add(launch, index, priority);
+    }
+
+    /**
+     * A thread with a binary max-heap of ready actions. The heap is stored
+     * in parallel arrays so that submitting an action does not allocate
+     * anything once the arrays are large enough.
+     */
+    private static final class Worker implements Runnable {
+
+        private final String name;
+        private ConcurrentLaunch[] launches;
+        private int[] indices;
+        private long[] priorities;
+        private int size;
+        private boolean running;
+
+        Worker(String name) {
+            this.name       = name;
+            this.launches   = new ConcurrentLaunch[16];
+            this.indices    = new int[16];
+            this.priorities = new long[16];
+        }
+
+        synchronized void add(ConcurrentLaunch launch, int index, long priority) {
+            if (size == indices.length) {
+                launches   = Arrays.copyOf(launches, size * 2);
+                indices    = Arrays.copyOf(indices, size * 2);
+                priorities = Arrays.copyOf(priorities, size * 2);
+            }
+
+            int i = size++;
+            while (i > 0) {
+                final int parent = (i - 1) >>> 1;
+                if (!before(priority, index, parent)) break;
+                move(parent, i);
+                i = parent;
+            }
+
+            launches[i]   = launch;
+            indices[i]    = index;
+            priorities[i] = priority;
+
+            if (running) {
+                notify();
+            } else {
+                final Thread thread = new Thread(this, name);
+                thread.setDaemon(true);
+                thread.start();
+                running = true;
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final ConcurrentLaunch launch;
+                final int index;
+
+                synchronized (this) {
+                    final long deadline = System.nanoTime() + KEEP_ALIVE;
+                    while (size == 0) {
+                        final long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            running = false;
+                            return;
+                        }
+
+                        try {
+                            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                        } catch (final InterruptedException ex) {
+                            running = false;
+                            return;
+                        }
+                    }
+
+                    launch = launches[0];
+                    index  = indices[0];
+                    removeFirst();
+                }
+
+                launch.invoke(index);
+            }
+        }
+
+        private void removeFirst() {
+            final int last = --size;
+            final ConcurrentLaunch lastLaunch = launches[last];
+            final int lastIndex = indices[last];
+            final long lastPriority = priorities[last];
+            launches[last] = null;
+
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size
+                &&  before(priorities[child + 1], indices[child + 1], child)) {
+                    child++;
+                }
+                if (!before(priorities[child], indices[child],
+                            lastPriority, lastIndex)) break;
+                move(child, i);
+                i = child;
+            }
+
+            launches[i]   = lastLaunch;
+            indices[i]    = lastIndex;
+            priorities[i] = lastPriority;
+        }
+
+        private void move(int from, int to) {
+            launches[to]   = launches[from];
+            indices[to]    = indices[from];
+            priorities[to] = priorities[from];
+        }
+
+        private boolean before(long priority, int index, int slot) {
+            return before(priority, index, priorities[slot], indices[slot]);
+        }
+
+        private static boolean before(long pa, int a, long pb, int b) {
+            return pa > pb || (pa == pb && a < b);
+        }
+    }
+}
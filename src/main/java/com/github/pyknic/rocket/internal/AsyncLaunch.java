@@ -0,0 +1,174 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.RocketException;
+import com.github.pyknic.rocket.RocketListener;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * A launch of a {@link PhasePlan} where every action is chained onto the
+ * futures of the actions it depends on, so that no thread is ever blocked
+ * waiting for another action to finish.
+ * <p>
+ * Just like a sequential launch, no further actions are invoked once an
+ * action has failed. The returned future is completed exceptionally with the
+ * first failure once the actions that were already running have finished.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class AsyncLaunch {
+
+    /**
+     * Starts launching the specified plan. If an executor is specified, every
+     * action is invoked on it. Otherwise the actions are invoked on the thread
+     * that completes their last dependency, which for actions without
+     * dependencies is the calling thread. Actions that are marked as blocking
+     * are always invoked on the executor for blocking actions.
+     * <p>
+     * Every action is invoked as part of the launch that the calling thread
+     * is running in the {@link LaunchCoordinator}, so that launches made by
+     * the action are nested in it.
+     *
+     * @param plan      the plan to launch
+     * @param executor  the executor to invoke actions on, or {@code null}
+     * @param blocking  the executor to invoke blocking actions on
+     * @param listener  the listener to notify, or {@code null}
+     * @return          future that is completed when every action has
+     *                  finished, or exceptionally with a
+     *                  {@link RocketException} if one of them failed
+     */
+    static CompletableFuture<Void> launch(PhasePlan plan,
+                                          Executor executor,
+                                          Executor blocking,
+                                          RocketListener listener) {
+
+        final long phaseStart = listener == null ? 0 : System.nanoTime();
+        if (listener != null) listener.beforePhase(plan);
+
+        final PhasePlan owner = LaunchCoordinator.current();
+        final AtomicReference<RocketException> first = new AtomicReference<>();
+
+        final int n = plan.size();
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[n];
+
+        for (int i = 0; i < n; i++) {
+            final int[] deps = plan.dependencies(i);
+            final CompletableFuture<?> ready;
+
+            switch (deps.length) {
+                case 0  : ready = CompletableFuture.completedFuture(null); break;
+                case 1  : ready = futures[deps[0]]; break;
+                default : {
+                    final CompletableFuture<?>[] depFutures =
+                        new CompletableFuture<?>[deps.length];
+                    for (int j = 0; j < deps.length; j++) {
+                        depFutures[j] = futures[deps[j]];
+                    }
+                    ready = CompletableFuture.allOf(depFutures);
+                }
+            }
+
+            final int index = i;
+            final Function<Object, CompletableFuture<Void>> invoke = v -> {
+                final RocketException failed = first.get();
+                if (failed != null) {
+                    final CompletableFuture<Void> skipped =
+                        new CompletableFuture<>();
+                    skipped.completeExceptionally(failed);
+                    return skipped;
+                }
+
+                final CompletableFuture<Void> invoked;
+                final PhasePlan previous = LaunchCoordinator.enter(owner);
+                try {
+                    invoked = listener == null
+                        ? plan.action(index).invokeAsync()
+                        : invokeObserved(plan, index, listener);
+                } finally {
+                    LaunchCoordinator.exit(previous);
+                }
+
+                // Remember the first failure so that the actions that are
+                // not yet invoked can be skipped.
+                invoked.whenComplete((result, ex) -> {
+                    final Throwable cause = ex instanceof CompletionException
+                        ? ex.getCause() : ex;
+                    if (cause instanceof RocketException) {
+                        first.compareAndSet(null, (RocketException) cause);
+                    }
+                });
+
+                return invoked;
+            };
+
+            final Executor lane = plan.action(i).blocking() ? blocking : executor;
+            futures[i] = lane == null
+                ? ready.thenCompose(invoke)
+                : ready.thenComposeAsync(invoke, lane);
+        }
+
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture.allOf(futures).whenComplete((v, ex) -> {
+            final long nanos = listener == null ? 0
+                : System.nanoTime() - phaseStart;
+
+            if (ex == null) {
+                if (listener != null) listener.afterPhase(plan, nanos);
+                done.complete(null);
+            } else {
+                final Throwable cause = first.get() != null ? first.get()
+                    : ex instanceof CompletionException
+                    && ex.getCause() != null ? ex.getCause() : ex;
+
+                final RocketException failure = cause instanceof RocketException
+                    ? (RocketException) cause
+                    : new RocketException(
+                        "Error launching " + plan.phase() + " phase.", cause);
+
+                if (listener != null) listener.phaseFailed(plan, nanos, failure);
+                done.completeExceptionally(failure);
+            }
+        });
+
+        return done;
+    }
+
+    private static CompletableFuture<Void> invokeObserved(PhasePlan plan,
+                                                          int index,
+                                                          RocketListener listener) {
+        listener.beforeAction(plan, index);
+        final long start = System.nanoTime();
+
+        return plan.action(index).invokeAsync().whenComplete((v, ex) -> {
+            final long nanos = System.nanoTime() - start;
+            if (ex == null) {
+                listener.afterAction(plan, index, nanos);
+            } else {
+                listener.actionFailed(plan, index, nanos, ex);
+            }
+        });
+    }
+
+    private AsyncLaunch() {}
+}
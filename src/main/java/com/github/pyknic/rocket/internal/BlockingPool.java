@@ -0,0 +1,62 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The default executor for actions that are marked as blocking. It starts a
+ * new daemon thread whenever every existing thread is busy, so a blocked
+ * action never delays another one, and stops threads that have been idle
+ * for a minute. The pool is shared by every {@code Rocket} in the JVM and is
+ * not created until the first blocking action is invoked.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class BlockingPool implements Executor {
+
+    static final Executor INSTANCE = new BlockingPool();
+
+    @Override
+    public void execute(Runnable command) {
+        Holder.POOL.execute(command);
+    }
+
+    private static final class Holder {
+
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        private static final ExecutorService POOL = new ThreadPoolExecutor(
+            0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            task -> {
+                final Thread thread = new Thread(task,
+                    "rocket-blocking-" + THREADS.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+    }
+
+    private BlockingPool() {}
+}
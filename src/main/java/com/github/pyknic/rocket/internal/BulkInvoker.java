@@ -0,0 +1,159 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.ExecutePlan;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RecursiveAction;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Action that invokes the same annotated method on every instance in a group
+ * of instances of the same class. Since arguments are resolved by type, every
+ * instance in the group is bound to the same arguments.
+ * <p>
+ * The group is invoked as a loop over the bound invocations. Groups larger
+ * than {@link #CHUNK} instances are split into chunks that run in the
+ * {@link java.util.concurrent.ForkJoinPool} of the invoking thread, or the
+ * common pool if it is not a fork-join thread. Blocking methods are never
+ * split, since that would block the fork-join pool. If an invocation fails,
+ * no more invocations are started and the first failure is thrown once the
+ * running chunks have finished. If some invocations return a
+ * {@link CompletionStage}, the action is finished when all of them have
+ * completed.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class BulkInvoker extends Action {
+
+    /**
+     * The largest number of instances that are invoked in a single loop.
+     */
+    static final int CHUNK = 1024;
+
+    private final Object[] instances;
+    private final ExecutePlan.Invocation[] invocations;
+
+    /**
+     * Creates an invoker for a group of instances.
+     *
+     * @param name         the display name of the action
+     * @param blocking     whether the method is marked as blocking
+     * @param instances    the instances in the group, in installation order
+     * @param args         the arguments shared by every instance
+     * @param invocations  the method bound to each instance
+     */
+    BulkInvoker(String name,
+                boolean blocking,
+                Object[] instances,
+                Object[] args,
+                ExecutePlan.Invocation[] invocations) {
+
+        super(name, blocking, instances[0], args);
+        this.instances   = instances;
+        this.invocations = requireNonNull(invocations);
+    }
+
+    @Override
+    boolean isOn(Object instance) {
+        for (final Object member : instances) {
+            if (member == instance) return true;
+        }
+        return false;
+    }
+
+    @Override
+    Object[] instances() {
+        return instances;
+    }
+
+    @Override
+    Object call() throws Throwable {
+        final Chunk all = new Chunk(new Loop(), 0, invocations.length);
+        all.invoke();
+        return all.loop.result();
+    }
+
+    /**
+     * The state that is shared by every chunk of a single invocation.
+     */
+    private final class Loop {
+
+        private volatile Throwable failure;
+        private final Queue<CompletableFuture<?>> stages =
+            new ConcurrentLinkedQueue<>();
+
+        void run(int from, int to) {
+            for (int i = from; i < to && failure == null; i++) {
+                try {
+                    final Object result = invocations[i].invoke();
+                    if (result instanceof CompletionStage) {
+                        stages.add(((CompletionStage<?>) result)
+                            .toCompletableFuture());
+                    }
+                } catch (final Throwable ex) {
+                    synchronized (this) {
+                        if (failure == null) failure = ex;
+                    }
+                }
+            }
+        }
+
+        Object result() throws Throwable {
+            if (failure != null) throw failure;
+            if (stages.isEmpty()) return null;
+            return CompletableFuture.allOf(
+                stages.toArray(new CompletableFuture<?>[0]));
+        }
+    }
+
+    /**
+     * A range of the invocations that is split in half until it is no
+     * larger than {@link #CHUNK}.
+     */
+    private final class Chunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1;
+
+        private final Loop loop;
+        private final int from;
+        private final int to;
+
+        Chunk(Loop loop, int from, int to) {
+            this.loop = loop;
+            this.from = from;
+            this.to   = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK || blocking()) {
+                loop.run(from, to);
+            } else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new Chunk(loop, from, middle),
+                          new Chunk(loop, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.Execute;
+import com.github.pyknic.rocket.ExecutePlan;
+import com.github.pyknic.rocket.RocketException;
+
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static com.github.pyknic.rocket.internal.util.ReflectionUtil.traverseMethods;
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * The {@link Execute}-annotated methods of a class, grouped by the phase they
+ * should be executed in. The metadata is computed once per class and then
+ * shared between every builder in the JVM. If a generated {@link ExecutePlan}
+ * exists for the class, it is used instead of reflection.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class ClassMetadata {
+
+    private static final ClassValue<ClassMetadata> CACHE =
+        new ClassValue<ClassMetadata>() {
+            @Override
+            protected ClassMetadata computeValue(Class<?> type) {
+                return new ClassMetadata(type);
+            }
+        };
+
+    /**
+     * Returns the metadata for the specified class.
+     *
+     * @param clazz  the class
+     * @return       the metadata
+     */
+    static ClassMetadata of(Class<?> clazz) {
+        return CACHE.get(clazz);
+    }
+
+    private final Map<String, List<ExecuteMethod>> methods;
+
+    private ClassMetadata(Class<?> clazz) {
+        final Map<String, List<ExecuteMethod>> byPhase = new HashMap<>();
+        final ExecutePlan<Object> plan = loadPlan(clazz);
+
+        if (plan == null) {
+            traverseMethods(clazz)
+                .filter(m -> !Modifier.isStatic(m.getModifiers()))
+                .forEachOrdered(m -> {
+                    final Execute execute = m.getAnnotation(Execute.class);
+                    if (execute != null) {
+                        byPhase.computeIfAbsent(key(execute.value()),
+                            k -> new ArrayList<>()
+                        ).add(new ExecuteMethod(clazz,
+                            m.getName(), m.getParameterTypes(),
+                            execute.blocking(),
+                            (name, blocking, inst, args) ->
+                                new MethodInvoker(name, blocking, m, inst, args),
+                            (name, insts, args) ->
+                                MethodInvoker.bindAll(name, m, insts, args)
+                        ));
+                    }
+                });
+        } else {
+            for (int i = 0; i < plan.size(); i++) {
+                final int method = i;
+                byPhase.computeIfAbsent(key(plan.phase(method)),
+                    k -> new ArrayList<>()
+                ).add(new ExecuteMethod(clazz,
+                    plan.methodName(method), plan.parameterTypes(method),
+                    plan.blocking(method),
+                    (name, blocking, inst, args) -> new PlanInvoker(name,
+                        blocking, inst, args, plan.bind(method, inst, args)),
+                    (name, insts, args) -> {
+                        final ExecutePlan.Invocation[] bound =
+                            new ExecutePlan.Invocation[insts.length];
+                        for (int j = 0; j < insts.length; j++) {
+                            bound[j] = plan.bind(method, insts[j], args);
+                        }
+                        return bound;
+                    }
+                ));
+            }
+        }
+
+        byPhase.replaceAll((k, v) -> unmodifiableList(v));
+        this.methods = byPhase;
+    }
+
+    /**
+     * Loads the generated {@link ExecutePlan} for the specified class, or
+     * returns {@code null} if the class has no plan.
+     *
+     * @param clazz  the class
+     * @return       the plan or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    private static ExecutePlan<Object> loadPlan(Class<?> clazz) {
+        if (clazz.isAnonymousClass() || clazz.isLocalClass()) {
+            return null;
+        }
+
+        final String className = clazz.getName();
+        final int lastDot = className.lastIndexOf('.');
+        final String planName = className.substring(0, lastDot + 1) +
+            className.substring(lastDot + 1).replace('$', '_') +
+            ExecutePlan.SUFFIX;
+
+        final Class<?> planClass;
+        try {
+            planClass = Class.forName(planName, true, clazz.getClassLoader());
+        } catch (final ClassNotFoundException | LinkageError ex) {
+            return null;
+        }
+
+        if (!ExecutePlan.class.isAssignableFrom(planClass)) {
+            return null;
+        }
+
+        try {
+            return (ExecutePlan<Object>) planClass.getConstructor().newInstance();
+        } catch (final ReflectiveOperationException ex) {
+            throw new RocketException(format(
+                "Found generated plan '%s' for class '%s', but it could not " +
+                "be instantiated.", planName, className), ex);
+        }
+    }
+
+    /**
+     * Returns the annotated methods that should be executed in the phase with
+     * the specified name, in the order they were found in the class. Phase
+     * names are matched ignoring case.
+     *
+     * @param phaseName  the name of the phase
+     * @return           list of methods
+     */
+    List<ExecuteMethod> methods(String phaseName) {
+        return methods.getOrDefault(key(phaseName), emptyList());
+    }
+
+    /**
+     * Returns the key that the methods of the phase with the specified name
+     * are stored under. Every character is folded the same way as
+     * {@link String#equalsIgnoreCase(String)} compares them, so two names
+     * have the same key exactly when they are equal ignoring case. Unlike
+     * {@link String#toUpperCase()}, this never changes the length of the
+     * name, so for an example "ß" is not considered equal to "SS".
+     *
+     * @param phaseName  the name of the phase
+     * @return           the key
+     */
+    private static String key(String phaseName) {
+        final char[] chars = phaseName.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * An {@link Execute}-annotated method together with the information
+     * about it that is needed to create actions from it.
+     */
+    static final class ExecuteMethod {
+
+        private final String methodName;
+        private final List<Class<?>> parameterTypes;
+        private final Set<Class<?>> dependencies;
+        private final int[] dependencyIds;
+        private final String name;
+        private final boolean blocking;
+        private final InvokerFactory factory;
+        private final BindingFactory binder;
+
+        private ExecuteMethod(Class<?> clazz,
+                              String methodName,
+                              Class<?>[] params,
+                              boolean blocking,
+                              InvokerFactory factory,
+                              BindingFactory binder) {
+
+            this.methodName     = requireNonNull(methodName);
+            this.blocking       = blocking;
+            this.parameterTypes = unmodifiableList(asList(params));
+            this.dependencies   = unmodifiableSet(new HashSet<>(parameterTypes));
+            this.dependencyIds  = dependencies.stream()
+                .mapToInt(TypeIds::id).sorted().toArray();
+            this.factory        = requireNonNull(factory);
+            this.binder         = requireNonNull(binder);
+            this.name           = format("%s#%s(%s)",
+                clazz.getSimpleName(),
+                methodName,
+                Stream.of(params)
+                    .map(Class::getSimpleName)
+                    .collect(joining(", "))
+            );
+        }
+
+        String methodName() {
+            return methodName;
+        }
+
+        List<Class<?>> parameterTypes() {
+            return parameterTypes;
+        }
+
+        /**
+         * Returns the distinct parameter types of the method.
+         *
+         * @return  the dependencies
+         */
+        Set<Class<?>> dependencies() {
+            return dependencies;
+        }
+
+        /**
+         * Returns the {@link TypeIds} of the distinct parameter types of the
+         * method in ascending order. The returned array must not be
+         * modified.
+         *
+         * @return  ids of the dependencies
+         */
+        int[] dependencyIds() {
+            return dependencyIds;
+        }
+
+        /**
+         * Returns the display name of actions created from this method, on
+         * the form {@code Class#method(ParamType, ParamType)}.
+         *
+         * @return  the display name
+         */
+        String name() {
+            return name;
+        }
+
+        /**
+         * Creates an action that invokes this method on the specified
+         * instance with the specified arguments.
+         *
+         * @param instance  the instance to invoke the method on
+         * @param args      the arguments, one for each parameter type
+         * @return          the action
+         */
+        Action invoker(Object instance, Object... args) {
+            return factory.create(name, blocking, instance, args);
+        }
+
+        /**
+         * Creates an action that invokes this method on every one of the
+         * specified instances with the same arguments. The display name of
+         * the action has the number of instances appended to it.
+         *
+         * @param instances  the instances to invoke the method on
+         * @param args       the arguments, one for each parameter type
+         * @return           the action
+         *
+         * @see BulkInvoker
+         */
+        Action bulkInvoker(Object[] instances, Object... args) {
+            return new BulkInvoker(
+                format("%s [%d instances]", name, instances.length),
+                blocking, instances, args,
+                binder.bind(name, instances, args)
+            );
+        }
+    }
+
+    @FunctionalInterface
+    private interface InvokerFactory {
+        Action create(String name,
+                      boolean blocking,
+                      Object instance,
+                      Object[] args);
+    }
+
+    @FunctionalInterface
+    private interface BindingFactory {
+        ExecutePlan.Invocation[] bind(String name,
+                                      Object[] instances,
+                                      Object[] args);
+    }
+}
@@ -0,0 +1,712 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.RocketException;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.newSetFromMap;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * The {@link PhasePlan} of a phase together with the state needed to update
+ * it when instances are added or removed, without ordering the whole phase
+ * again.
+ * <p>
+ * The order of the actions is the same as if the makers were swept over
+ * repeatedly in the order they were created, taking every maker that is
+ * possible to invoke. This means that when the makers of an instance are
+ * added to the end or removed, every action that came before the point
+ * where the change could first make a difference keeps its place, and
+ * only the rest of the phase is ordered again.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class CompiledPhase {
+
+    private final String name;
+    private final List<ActionMaker> makers;
+    private final ActionMaker[] order;
+    private final int[] sweeps;
+    private final PhasePlan plan;
+    private volatile Resolvers resolvers; // Created on first use
+
+    private CompiledPhase(String name,
+                          List<ActionMaker> makers,
+                          ActionMaker[] order,
+                          int[] sweeps,
+                          Resolvers resolvers,
+                          PhasePlan plan) {
+
+        this.name      = requireNonNull(name);
+        this.makers    = unmodifiableList(makers);
+        this.order     = requireNonNull(order);
+        this.sweeps    = requireNonNull(sweeps);
+        this.resolvers = resolvers;
+        this.plan      = requireNonNull(plan);
+    }
+
+    /**
+     * Recreates a compiled phase from an order that has been computed
+     * before, without resolving any types.
+     *
+     * @param name          the name of the phase
+     * @param makers        the makers in the order they were created
+     * @param order         the makers in launch order
+     * @param sweeps        the sweep that each action was taken in
+     * @param dependencies  the dependencies of each action
+     * @return              the compiled phase
+     */
+    static CompiledPhase restore(String name,
+                                 List<ActionMaker> makers,
+                                 ActionMaker[] order,
+                                 int[] sweeps,
+                                 int[][] dependencies) {
+
+        final Action[] actions = new Action[order.length];
+        for (int i = 0; i < order.length; i++) {
+            actions[i] = order[i].action();
+        }
+
+        return new CompiledPhase(name, makers, order, sweeps, null,
+            new PhasePlan(name, actions, dependencies));
+    }
+
+    /**
+     * Orders the specified makers and creates the plan for the phase.
+     *
+     * @param name    the name of the phase
+     * @param makers  the makers in the order they were created
+     * @return        the compiled phase
+     *
+     * @throws RocketException  if some makers could never be invoked
+     */
+    static CompiledPhase compile(String name, List<ActionMaker> makers) {
+        return compile(name, makers, null, 0, 0, 0, emptyMap());
+    }
+
+    /**
+     * Checks that every one of the specified makers will be possible to
+     * invoke once the phase is compiled, without ordering the makers or
+     * creating any actions. Every type resolved by an instance is only
+     * visited once, no matter how many makers the instance has.
+     *
+     * @param name    the name of the phase
+     * @param makers  the makers in the order they were created
+     *
+     * @throws RocketException  if some makers could never be invoked
+     */
+    static void validate(String name, List<ActionMaker> makers) {
+        final int n = makers.size();
+        final TypeTable types = TypeTable.of(makers);
+        final int[][] deps = types.dependencies(makers);
+        final int[] unresolved = new int[n];
+        final int[] queue = new int[n];
+        int head = 0, tail = 0;
+
+        for (int i = 0; i < n; i++) {
+            unresolved[i] = deps[i].length;
+            if (unresolved[i] == 0) queue[tail++] = i;
+        }
+
+        final Waiters waiting = new Waiters(deps, unresolved, null, types.size());
+        final BitSet resolvedTypes = new BitSet(types.size());
+        final Set<Object> resolving = newSetFromMap(new IdentityHashMap<>());
+
+        while (head < tail) {
+            final Object instance = makers.get(queue[head++]).instance();
+            if (!resolving.add(instance)) continue;
+
+            for (final int id : TypeIds.ancestorIds(instance.getClass())) {
+                final int type = types.local(id);
+                if (resolvedTypes.get(type)) continue;
+                resolvedTypes.set(type);
+
+                for (int w = waiting.start(type); w < waiting.end(type); w++) {
+                    final int j = waiting.maker(w);
+                    if (--unresolved[j] == 0) queue[tail++] = j;
+                }
+            }
+        }
+
+        if (tail < n) {
+            throw stuck(name, makers, j -> unresolved[j] > 0);
+        }
+    }
+
+    String name() {
+        return name;
+    }
+
+    /**
+     * Returns the makers of this phase in the order they were created.
+     *
+     * @return  the makers
+     */
+    List<ActionMaker> makers() {
+        return makers;
+    }
+
+    PhasePlan plan() {
+        return plan;
+    }
+
+    /**
+     * Returns the maker of the action with the specified index.
+     *
+     * @param index  the action index
+     * @return       the maker
+     */
+    ActionMaker maker(int index) {
+        return order[index];
+    }
+
+    /**
+     * Returns the sweep that the action with the specified index was taken
+     * in.
+     *
+     * @param index  the action index
+     * @return       the sweep
+     */
+    int sweep(int index) {
+        return sweeps[index];
+    }
+
+    /**
+     * Returns the index of the first action that resolved each type. If this
+     * phase was restored, it is worked out from the order the first time it
+     * is needed.
+     *
+     * @return  the resolving action of each type
+     */
+    private Resolvers resolvers() {
+        Resolvers result = resolvers;
+        if (result == null) {
+            final TypeTable types = TypeTable.of(asList(order));
+            final int[] computed = new int[types.size()];
+            Arrays.fill(computed, -1);
+            for (int i = 0; i < order.length; i++) {
+                for (final int id :
+                        TypeIds.ancestorIds(order[i].instance().getClass())) {
+                    final int type = types.local(id);
+                    if (computed[type] < 0) computed[type] = i;
+                }
+            }
+            resolvers = result = new Resolvers(types, computed);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new compiled phase where the specified makers have been
+     * added after every existing one.
+     * <p>
+     * Since the new makers come last, nothing changes before the sweep where
+     * the first of them becomes possible to invoke, and in that sweep they
+     * are taken after every existing action. The order is therefore kept up
+     * to the end of that sweep and only the rest is computed again.
+     *
+     * @param added  the makers to add
+     * @return       the new compiled phase
+     *
+     * @throws RocketException  if some makers could never be invoked
+     */
+    CompiledPhase with(List<ActionMaker> added) {
+        if (added.isEmpty()) return this;
+
+        final int n = order.length;
+        int sweep = n == 0 ? 0 : sweeps[n - 1];
+        final Resolvers resolvers = resolvers();
+        for (final ActionMaker am : added) {
+            int ready = 0;
+            for (final int dep : am.dependencyIds()) {
+                final int resolver = resolvers.of(dep);
+                if (resolver < 0) {
+                    ready = Integer.MAX_VALUE;
+                    break;
+                }
+                ready = Math.max(ready, sweeps[resolver]);
+            }
+            sweep = Math.min(sweep, ready);
+        }
+
+        int prefix = 0;
+        while (prefix < n && sweeps[prefix] <= sweep) prefix++;
+
+        final List<ActionMaker> combined = new ArrayList<>(n + added.size());
+        combined.addAll(makers);
+        combined.addAll(added);
+
+        return compile(name, combined, this, prefix, sweep, makers.size(),
+            emptyMap());
+    }
+
+    /**
+     * Returns a new compiled phase where every maker for the specified
+     * instance has been removed. Every remaining maker is passed to the
+     * specified operator, which may return a new maker if the arguments of
+     * the action need to be resolved again.
+     * <p>
+     * Nothing changes before the first action on the removed instance, so
+     * the order is kept up to that action and only the rest is computed
+     * again.
+     *
+     * @param instance  the instance to remove
+     * @param rebind    operator that returns the maker to use instead of
+     *                  each remaining maker
+     * @return          the new compiled phase
+     *
+     * @throws RocketException  if some makers could never be invoked
+     */
+    CompiledPhase without(Object instance, UnaryOperator<ActionMaker> rebind) {
+        final List<ActionMaker> kept = new ArrayList<>(makers.size());
+        final Map<ActionMaker, ActionMaker> replaced = new IdentityHashMap<>();
+        int removedAt = -1, cursor = 0;
+
+        for (int i = 0; i < makers.size(); i++) {
+            final ActionMaker am = makers.get(i);
+            if (am.instance() == instance) {
+                if (removedAt < 0) removedAt = i;
+                continue;
+            }
+
+            final ActionMaker rebound = rebind.apply(am);
+            if (rebound != am) replaced.put(am, rebound);
+            kept.add(rebound);
+        }
+
+        if (removedAt < 0 && replaced.isEmpty()) return this;
+
+        // Find the first action on the removed instance and where its maker
+        // would have been among the remaining ones.
+        int prefix = 0;
+        while (prefix < order.length && order[prefix].instance() != instance) {
+            prefix++;
+        }
+
+        final int sweep;
+        if (prefix < order.length) {
+            final int position = makers.indexOf(order[prefix]);
+            for (int i = 0; i < position; i++) {
+                if (makers.get(i).instance() != instance) cursor++;
+            }
+            sweep = sweeps[prefix];
+        } else {
+            cursor = kept.size();
+            sweep  = order.length == 0 ? 0 : sweeps[order.length - 1];
+        }
+
+        return compile(name, kept, this, prefix, sweep, cursor, replaced);
+    }
+
+    /**
+     * Orders the specified makers and creates the plan for the phase,
+     * starting from a point in the order of a previous compilation.
+     * <p>
+     * The order is the same as if the makers were swept over repeatedly in
+     * the order they were created, taking every maker that is possible to
+     * invoke, but it is computed Kahn-style in linear time: every maker is
+     * registered as waiting on its unresolved parameter types, and when an
+     * action resolves a type, only the makers waiting on it are revisited.
+     * Makers that become possible to invoke are remembered in one set for the
+     * current sweep and one for the next, depending on if they come before or
+     * after the maker that resolved them.
+     * <p>
+     * When resuming, the state of the sweep after the first {@code prefix}
+     * actions of the previous order is fully determined by which makers have
+     * been taken and the position of the sweep, so every remaining maker
+     * that is possible to invoke is placed in the current sweep if it comes
+     * at or after the cursor and in the next sweep otherwise.
+     *
+     * @param name      the name of the phase
+     * @param makers    the makers in the order they were created
+     * @param previous  the previous compilation, or {@code null}
+     * @param prefix    the number of actions to keep from the previous order
+     * @param sweep     the sweep to resume in
+     * @param cursor    the position among the makers to resume the sweep at
+     * @param replaced  makers in the previous order that have been replaced
+     * @return          the compiled phase
+     *
+     * @throws RocketException  if some makers could never be invoked
+     */
+    private static CompiledPhase compile(String name,
+                                         List<ActionMaker> makers,
+                                         CompiledPhase previous,
+                                         int prefix,
+                                         int sweep,
+                                         int cursor,
+                                         Map<ActionMaker, ActionMaker> replaced) {
+
+        final int n = makers.size();
+        final ActionMaker[] order = new ActionMaker[n];
+        final int[] sweeps = new int[n];
+        final Action[] actions = new Action[n];
+        final int[][] dependencies = new int[n][];
+
+        // For every resolved type, remember the index of the action that
+        // resolved it so that the dependencies between the actions can be
+        // recorded. Types are numbered locally so that the arrays are sized
+        // by the number of types in the phase.
+        final TypeTable types = TypeTable.of(makers);
+        final int[][] deps = types.dependencies(makers);
+        final int[] resolved = new int[types.size()];
+        Arrays.fill(resolved, -1);
+        final Map<Object, Integer> previousOn = new IdentityHashMap<>();
+        final BitSet done = new BitSet(n);
+
+        // Keep the beginning of the previous order as it is.
+        if (prefix > 0) {
+            final Map<ActionMaker, Integer> positions = new IdentityHashMap<>();
+            for (int i = 0; i < n; i++) positions.put(makers.get(i), i);
+
+            for (int i = 0; i < prefix; i++) {
+                final ActionMaker am = replaced.getOrDefault(
+                    previous.order[i], previous.order[i]);
+
+                done.set(positions.get(am));
+                order[i]        = am;
+                sweeps[i]       = previous.sweeps[i];
+                actions[i]      = am.action();
+                dependencies[i] = previous.plan.dependencies(i);
+                previousOn.put(am.instance(), i);
+            }
+
+            final Resolvers before = previous.resolvers();
+            for (int t = 0; t < before.actions.length; t++) {
+                final int action = before.actions[t];
+                if (action < 0 || action >= prefix) continue;
+
+                // Every kept action is on an instance that is still there.
+                resolved[types.local(before.types.global(t))] = action;
+            }
+        }
+
+        // Register every remaining maker as waiting on its unresolved
+        // parameter types.
+        final int[] unresolved = new int[n];
+        BitSet current = new BitSet(n);
+        BitSet next = new BitSet(n);
+
+        for (int i = 0; i < n; i++) {
+            if (done.get(i)) continue;
+            for (final int dep : deps[i]) {
+                if (resolved[dep] < 0) unresolved[i]++;
+            }
+
+            if (unresolved[i] == 0) {
+                (i >= cursor ? current : next).set(i);
+            }
+        }
+
+        final Waiters waiting =
+            new Waiters(deps, unresolved, resolved, types.size());
+
+        for (int index = prefix; index < n; index++) {
+            int i = current.nextSetBit(cursor);
+
+            // If the current sweep is over, start the next one.
+            if (i < 0) {
+                if (next.isEmpty()) {
+                    throw stuck(name, makers, j -> !done.get(j));
+                }
+
+                final BitSet swap = current;
+                current = next;
+                next    = swap;
+                i       = current.nextSetBit(0);
+                sweep++;
+            }
+
+            current.clear(i);
+            done.set(i);
+            cursor = i + 1;
+
+            // An action must wait for the actions that resolved its arguments
+            // and for any previous action on the same instance.
+            final ActionMaker am = makers.get(i);
+            final IntStream.Builder edges = IntStream.builder();
+            for (final int dep : deps[i]) {
+                edges.accept(resolved[dep]);
+            }
+
+            final Integer prev = previousOn.put(am.instance(), index);
+            if (prev != null) edges.accept(prev);
+
+            order[index]        = am;
+            sweeps[index]       = sweep;
+            actions[index]      = am.action();
+            dependencies[index] = edges.build().distinct().sorted().toArray();
+
+            // Resolve every ancestor of the instance, waking up the makers
+            // that are waiting on them.
+            for (final int id : TypeIds.ancestorIds(am.instance().getClass())) {
+                final int type = types.local(id);
+                if (resolved[type] >= 0) continue;
+                resolved[type] = index;
+
+                for (int w = waiting.start(type); w < waiting.end(type); w++) {
+                    final int j = waiting.maker(w);
+                    if (--unresolved[j] == 0) {
+                        (j > i ? current : next).set(j);
+                    }
+                }
+            }
+        }
+
+        return new CompiledPhase(name, makers, order, sweeps,
+            new Resolvers(types, resolved),
+            new PhasePlan(name, actions, dependencies));
+    }
+
+    private static RocketException stuck(String name,
+                                         List<ActionMaker> makers,
+                                         IntPredicate isStuck) {
+        return new RocketException(
+            "Error building " + name + " phase. The " +
+                "following actions appear to be stuck in an " +
+                "infinite loop: [\n  " +
+                IntStream.range(0, makers.size())
+                    .filter(isStuck)
+                    .mapToObj(j -> makers.get(j).name())
+                    .collect(joining("\n  ")) +
+                "\n]."
+        );
+    }
+
+    /**
+     * The makers that are waiting on each unresolved type, stored as one
+     * range of maker indices per local type index.
+     */
+    private static final class Waiters {
+
+        private final int[] starts;
+        private final int[] makers;
+
+        /**
+         * Registers every maker that has unresolved dependencies as waiting
+         * on each of them.
+         *
+         * @param deps        the local indices of the dependencies of each
+         *                    maker
+         * @param unresolved  the number of unresolved dependencies of each
+         *                    maker
+         * @param resolved    the resolving action of each type, or
+         *                    {@code null} if no type is resolved yet
+         * @param types       the number of types
+         */
+        Waiters(int[][] deps, int[] unresolved, int[] resolved, int types) {
+            this.starts = new int[types + 1];
+            for (int i = 0; i < unresolved.length; i++) {
+                if (unresolved[i] == 0) continue;
+                for (final int dep : deps[i]) {
+                    if (resolved == null || resolved[dep] < 0) starts[dep + 1]++;
+                }
+            }
+
+            for (int t = 0; t < types; t++) starts[t + 1] += starts[t];
+
+            this.makers = new int[starts[types]];
+            final int[] fill = Arrays.copyOf(starts, types);
+            for (int i = 0; i < unresolved.length; i++) {
+                if (unresolved[i] == 0) continue;
+                for (final int dep : deps[i]) {
+                    if (resolved == null || resolved[dep] < 0) {
+                        makers[fill[dep]++] = i;
+                    }
+                }
+            }
+        }
+
+        int start(int type) {
+            return starts[type];
+        }
+
+        int end(int type) {
+            return starts[type + 1];
+        }
+
+        int maker(int index) {
+            return makers[index];
+        }
+    }
+
+    /**
+     * The index of the first action that resolved each type in a compiled
+     * phase, or {@code -1} for types that were not resolved.
+     */
+    private static final class Resolvers {
+
+        private final TypeTable types;
+        private final int[] actions;
+
+        Resolvers(TypeTable types, int[] actions) {
+            this.types   = requireNonNull(types);
+            this.actions = requireNonNull(actions);
+        }
+
+        /**
+         * Returns the index of the action that resolved the type with the
+         * specified {@link TypeIds type id}.
+         *
+         * @param type  the type id
+         * @return      the resolving action, or {@code -1} if none
+         */
+        int of(int type) {
+            final int local = types.local(type);
+            return local < 0 ? -1 : actions[local];
+        }
+    }
+
+    /**
+     * The types that occur in a single phase, numbered consecutively in the
+     * order they were first added. Arrays indexed by type are thereby sized
+     * by the number of types in the phase, no matter how many classes have
+     * been given a {@link TypeIds type id} in the JVM. The type ids are kept
+     * in an open-addressing hash table.
+     */
+    private static final class TypeTable {
+
+        private int[] keys;    // The type id plus one, or zero if unused
+        private int[] locals;  // The local index of the type in each slot
+        private int[] globals; // The type id of each local index
+        private int size;
+
+        private TypeTable(int expected) {
+            int capacity = 16;
+            while (capacity < expected * 2) capacity <<= 1;
+            this.keys    = new int[capacity];
+            this.locals  = new int[capacity];
+            this.globals = new int[Math.max(expected, 4)];
+        }
+
+        /**
+         * Creates a table with every ancestor of the instances of the
+         * specified makers and every parameter type of their methods.
+         *
+         * @param makers  the makers
+         * @return        the new table
+         */
+        static TypeTable of(List<ActionMaker> makers) {
+            final TypeTable table = new TypeTable(makers.size() * 2);
+            Class<?> last = null;
+            for (final ActionMaker am : makers) {
+                // Makers of the same class often come one after another.
+                final Class<?> clazz = am.instance().getClass();
+                if (clazz != last) {
+                    for (final int id : TypeIds.ancestorIds(clazz)) {
+                        table.add(id);
+                    }
+                    last = clazz;
+                }
+
+                for (final int id : am.dependencyIds()) table.add(id);
+            }
+            return table;
+        }
+
+        /**
+         * Returns the local indices of the parameter types of every one of
+         * the specified makers, which must all be in the table.
+         *
+         * @param makers  the makers
+         * @return        local indices of the dependencies of each maker
+         */
+        int[][] dependencies(List<ActionMaker> makers) {
+            final int[][] result = new int[makers.size()][];
+            for (int i = 0; i < result.length; i++) {
+                final int[] ids = makers.get(i).dependencyIds();
+                result[i] = new int[ids.length];
+                for (int j = 0; j < ids.length; j++) {
+                    result[i][j] = local(ids[j]);
+                }
+            }
+            return result;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns the local index of the type with the specified id.
+         *
+         * @param type  the type id
+         * @return      the local index, or {@code -1} if not in the table
+         */
+        int local(int type) {
+            final int slot = slot(keys, type);
+            return keys[slot] == 0 ? -1 : locals[slot];
+        }
+
+        /**
+         * Returns the type id of the type with the specified local index.
+         *
+         * @param local  the local index
+         * @return       the type id
+         */
+        int global(int local) {
+            return globals[local];
+        }
+
+        private void add(int type) {
+            final int slot = slot(keys, type);
+            if (keys[slot] != 0) return;
+
+            if (size == globals.length) {
+                globals = Arrays.copyOf(globals, size * 2);
+            }
+
+            keys[slot]    = type + 1;
+            locals[slot]  = size;
+            globals[size] = type;
+
+            if (++size * 2 > keys.length) grow();
+        }
+
+        private void grow() {
+            final int[] newKeys = new int[keys.length * 2];
+            final int[] newLocals = new int[keys.length * 2];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == 0) continue;
+                final int slot = slot(newKeys, keys[i] - 1);
+                newKeys[slot]   = keys[i];
+                newLocals[slot] = locals[i];
+            }
+            keys   = newKeys;
+            locals = newLocals;
+        }
+
+        private static int slot(int[] keys, int type) {
+            final int mask = keys.length - 1;
+            final int hash = type * 0x9E3779B9;
+            int slot = (hash ^ hash >>> 16) & mask;
+            while (keys[slot] != 0 && keys[slot] != type + 1) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.RocketException;
+import com.github.pyknic.rocket.RocketListener;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A single launch of a {@link PhasePlan} where the actions are invoked on
+ * other threads as soon as all of their dependencies have finished.
+ * Subclasses decide which thread every ready action is invoked on, and call
+ * {@link #invoke(int)} on that thread. Actions that are marked as blocking
+ * should be invoked on the separate executor given to the constructor.
+ * <p>
+ * The duration of every action is recorded in the {@link LaunchSchedule} of
+ * the plan so that the actions on the critical path can be given priority
+ * the next time the plan is launched.
+ * <p>
+ * Every action is invoked as part of the launch that the constructing thread
+ * was running in the {@link LaunchCoordinator}, so that launches made by the
+ * action are nested in it no matter which thread it is invoked on.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+abstract class ConcurrentLaunch {
+
+    final PhasePlan plan;
+    final LaunchSchedule schedule;
+    final Executor blocking;
+    private final RocketListener listener; // Nullable
+    private final PhasePlan owner; // Nullable
+    private final AtomicIntegerArray pending;
+    private final AtomicInteger inFlight;
+    private final AtomicReference<Throwable> failure;
+    private final CountDownLatch done;
+
+    ConcurrentLaunch(PhasePlan plan,
+                     Executor blocking,
+                     RocketListener listener) {
+
+        this.plan     = requireNonNull(plan);
+        this.blocking = requireNonNull(blocking);
+        this.listener = listener;
+        this.schedule = plan.schedule();
+        this.owner    = LaunchCoordinator.current();
+        this.pending  = new AtomicIntegerArray(plan.size());
+        this.inFlight = new AtomicInteger();
+        this.failure  = new AtomicReference<>();
+        this.done     = new CountDownLatch(1);
+
+        for (int i = 0; i < plan.size(); i++) {
+            pending.set(i, plan.dependencyCount(i));
+        }
+    }
+
+    /**
+     * Adds an action that is ready to be invoked. The action must eventually
+     * be passed to {@link #invoke(int)}, unless {@link #rejected(Throwable)}
+     * is called for it.
+     *
+     * @param index  the index of the ready action
+     * @return       {@code true} if the action has to be flushed before it
+     *               is invoked, or {@code false} if it has been dispatched
+     */
+    abstract boolean enqueue(int index);
+
+    /**
+     * Called after one or more actions have been enqueued, so that
+     * implementations can start invoking them.
+     *
+     * @param count  the number of enqueued actions that has to be flushed
+     */
+    abstract void flush(int count);
+
+    /**
+     * Invokes an action on the specified executor.
+     *
+     * @param executor  the executor
+     * @param index     the index of the ready action
+     */
+    final void execute(Executor executor, int index) {
+        try {
+            executor.execute(() -> invoke(index));
+        } catch (final RuntimeException ex) {
+            rejected(ex);
+        }
+    }
+
+    /**
+     * Invokes every action in the plan and blocks until they have all
+     * finished. If any action fails, no further actions are started and the
+     * first failure is rethrown once the running actions have finished. The
+     * same happens if the calling thread is interrupted, in which case the
+     * interrupt flag is restored before the exception is thrown.
+     */
+    final void run() {
+        final long phaseStart = listener == null ? 0 : System.nanoTime();
+        if (listener != null) listener.beforePhase(plan);
+
+        if (plan.size() > 0) {
+            // Count the roots as in flight before submitting any of them so
+            // that the launch can't be considered done until all are
+            // submitted.
+            final int[] roots = plan.roots();
+            inFlight.addAndGet(roots.length);
+
+            int queued = 0;
+            for (final int root : roots) {
+                if (enqueue(root)) queued++;
+            }
+
+            if (queued > 0) flush(queued);
+
+            // If interrupted, no further actions are started, but the ones
+            // that are running must finish before the launch is released.
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (final InterruptedException ex) {
+                    if (!interrupted) {
+                        interrupted = true;
+                        failure.compareAndSet(null, new RocketException(
+                            "Interrupted while waiting for the " +
+                            plan.phase() + " phase to finish.", ex));
+                    }
+                }
+            }
+
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+
+        final Throwable cause = failure.get();
+        final RocketException ex = cause == null ? null
+            : cause instanceof RocketException ? (RocketException) cause
+            : new RocketException(
+                "Error launching " + plan.phase() + " phase.", cause);
+
+        if (listener != null) {
+            final long nanos = System.nanoTime() - phaseStart;
+            if (ex == null) {
+                listener.afterPhase(plan, nanos);
+            } else {
+                listener.phaseFailed(plan, nanos, ex);
+            }
+        }
+
+        if (ex == null) {
+            schedule.update();
+        } else {
+            throw ex;
+        }
+    }
+
+    /**
+     * Invokes the action with the specified index on the calling thread and
+     * enqueues any dependents that become ready once it has finished.
+     *
+     * @param index  the action index
+     */
+    final void invoke(int index) {
+        if (failure.get() != null) {
+            finish();
+            return;
+        }
+
+        long started = 0;
+        final CompletionStage<?> stage;
+        final PhasePlan previous = LaunchCoordinator.enter(owner);
+        try {
+            if (listener != null) listener.beforeAction(plan, index);
+            started = System.nanoTime();
+            stage = plan.action(index).invoke();
+        } catch (final Throwable ex) {
+            // The action itself was never invoked if the listener failed.
+            fail(index, started == 0 ? 0 : System.nanoTime() - started, ex);
+            return;
+        } finally {
+            LaunchCoordinator.exit(previous);
+        }
+
+        // If the action returned a stage, its dependents are submitted once
+        // the stage has completed instead of blocking this thread.
+        final long start = started;
+        if (stage == null) {
+            complete(index, start);
+        } else {
+            stage.whenComplete((result, ex) -> {
+                if (ex == null) {
+                    complete(index, start);
+                } else {
+                    fail(index, System.nanoTime() - start,
+                        plan.action(index).failure(ex));
+                }
+            });
+        }
+    }
+
+    /**
+     * Called instead of {@link #invoke(int)} if an enqueued action could not
+     * be scheduled. The launch is failed.
+     *
+     * @param ex  the reason
+     */
+    final void rejected(Throwable ex) {
+        failure.compareAndSet(null, ex);
+        finish();
+    }
+
+    private void complete(int index, long start) {
+        try {
+            final long nanos = System.nanoTime() - start;
+            schedule.record(index, nanos);
+            if (listener != null) listener.afterAction(plan, index, nanos);
+
+            // Enqueue all the dependents that became ready before flushing
+            // so that the one with the highest priority is taken first.
+            int queued = 0;
+            for (final int dependent : plan.dependents(index)) {
+                if (pending.decrementAndGet(dependent) == 0) {
+                    inFlight.incrementAndGet();
+                    if (enqueue(dependent)) queued++;
+                }
+            }
+
+            if (queued > 0) flush(queued);
+        } catch (final Throwable ex) {
+            failure.compareAndSet(null, ex);
+        } finally {
+            finish();
+        }
+    }
+
+    private void fail(int index, long nanos, Throwable ex) {
+        try {
+            failure.compareAndSet(null, ex);
+            if (listener != null) {
+                listener.actionFailed(plan, index, nanos, ex);
+            }
+        } finally {
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (inFlight.decrementAndGet() == 0) {
+            done.countDown();
+        }
+    }
+}
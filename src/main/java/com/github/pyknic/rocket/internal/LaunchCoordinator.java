@@ -0,0 +1,436 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.RocketException;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static java.util.Collections.emptyList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Coordinates the launches of a single {@link RocketImpl} that are made from
+ * several threads at the same time. If a plan is launched while the same plan
+ * is already running, the second launch does not invoke anything, but waits
+ * for the running one to finish and then completes the same way. Two
+ * different plans that invoke methods on a common instance are never running
+ * at the same time, while plans that share no instances are launched
+ * concurrently.
+ * <p>
+ * A launch made from inside an action of a running launch is nested in that
+ * launch and is not coordinated at all, regardless of which thread the
+ * action is invoked on. The plan that every thread is invoking actions for is
+ * tracked using {@link #enter(PhasePlan)} and {@link #exit(PhasePlan)}.
+ * <p>
+ * The state of each running plan is kept in a {@link Slot} that is looked
+ * up by the identity of the plan, so the plans themselves stay immutable.
+ * A slot is only kept while its plan is running or while some thread that
+ * joined the launch has not yet read the outcome. After that, the slot is
+ * recycled for the next launch. Nothing is allocated when a plan is
+ * launched without any other launch running at the same time.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class LaunchCoordinator {
+
+    /**
+     * What the caller of {@link #acquire(RocketState, PhasePlan)} should do.
+     */
+    enum Admission {
+
+        /**
+         * The plan should be launched and then released.
+         */
+        RUN,
+
+        /**
+         * The plan should be launched sequentially on the calling thread,
+         * but not released, since the thread is already invoking an action
+         * of another launch that might be waiting for it.
+         */
+        NESTED,
+
+        /**
+         * The plan has already been launched successfully by some other
+         * thread and should not be launched again.
+         */
+        JOINED
+    }
+
+    private static final ThreadLocal<PhasePlan> OWNER = new ThreadLocal<>();
+
+    private final List<PhasePlan> active;     // Guarded by this
+    private final Map<PhasePlan, Slot> slots; // Guarded by this
+    private final List<Slot> spare;           // Guarded by this
+    private final List<Pending> pending;      // Guarded by this
+
+    LaunchCoordinator() {
+        this.active  = new ArrayList<>();
+        this.slots   = new IdentityHashMap<>();
+        this.spare   = new ArrayList<>();
+        this.pending = new ArrayList<>();
+    }
+
+    /**
+     * Returns the admitted plan that the calling thread is currently
+     * invoking actions for. If the calling thread is running a nested
+     * launch, this is the plan of the outermost launch.
+     *
+     * @return  the plan, or {@code null} if the thread is not in a launch
+     */
+    static PhasePlan current() {
+        return OWNER.get();
+    }
+
+    /**
+     * Marks the calling thread as invoking actions for the specified plan
+     * until {@link #exit(PhasePlan)} is called. Launches made by the thread
+     * in the meantime are nested in that plan.
+     *
+     * @param owner  the admitted plan, or {@code null}
+     * @return       the plan that the thread was invoking actions for before,
+     *               which must be passed to {@link #exit(PhasePlan)}
+     */
+    static PhasePlan enter(PhasePlan owner) {
+        final PhasePlan previous = OWNER.get();
+        OWNER.set(owner);
+        return previous;
+    }
+
+    /**
+     * Restores the plan that the calling thread was invoking actions for
+     * before {@link #enter(PhasePlan)} was called.
+     *
+     * @param previous  the value returned by {@link #enter(PhasePlan)}
+     */
+    static void exit(PhasePlan previous) {
+        // The value is set rather than removed so that the entry of the
+        // thread is not allocated again by the next launch.
+        OWNER.set(previous);
+    }
+
+    /**
+     * Waits until the specified plan can be launched by the calling thread.
+     * If the same plan is already running, this waits for it to finish
+     * instead and then either returns {@link Admission#JOINED} or rethrows
+     * the exception that the running launch failed with. Otherwise this
+     * waits until no plan that shares an instance with it is running.
+     * <p>
+     * If {@link Admission#RUN} is returned, the caller must launch the plan
+     * between {@link #enter(PhasePlan)} and {@link #exit(PhasePlan)}, and
+     * call {@link #release(PhasePlan, Throwable)} once it has finished.
+     *
+     * @param state  the state that the plan belongs to
+     * @param plan   the plan to launch
+     * @return       what the caller should do
+     *
+     * @throws RuntimeException  the exception that a running launch of the
+     *                           same plan failed with
+     */
+    Admission acquire(RocketState<?> state, PhasePlan plan) {
+        boolean interrupted = false;
+        Throwable failure;
+
+        try {
+            synchronized (this) {
+                if (isNested()) return Admission.NESTED;
+
+                Slot slot;
+                while ((slot = slots.get(plan)) == null) {
+                    if (!conflicts(state, plan)) {
+                        start(state, plan);
+                        return Admission.RUN;
+                    }
+
+                    interrupted |= await();
+                }
+
+                slot.joiners++;
+                try {
+                    while (slot.running) {
+                        interrupted |= await();
+                    }
+                    failure = slot.failure;
+                } finally {
+                    // The slot can not be recycled until every thread that
+                    // joined it has read the outcome.
+                    if (--slot.joiners == 0 && !slot.running) recycle(slot);
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+
+        if (failure == null) return Admission.JOINED;
+        throw rethrow(failure);
+    }
+
+    /**
+     * Starts launching the specified plan without blocking the calling
+     * thread. If the same plan is already running, the returned future is
+     * completed when that launch has finished. If a plan that shares an
+     * instance with it is running, the launch is started once it no longer
+     * conflicts with anything.
+     *
+     * @param state     the state that the plan belongs to
+     * @param plan      the plan to launch
+     * @param launcher  function that starts launching a plan and returns a
+     *                  future for its completion
+     * @return          future that is completed when the launch has finished
+     */
+    CompletableFuture<Void> launchAsync(
+            RocketState<?> state,
+            PhasePlan plan,
+            Function<PhasePlan, CompletableFuture<Void>> launcher) {
+
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final boolean nested;
+
+        synchronized (this) {
+            nested = isNested();
+
+            if (!nested) {
+                final Slot slot = slots.get(plan);
+                if (slot != null) {
+                    slot.completion().whenComplete((v, ex) ->
+                        complete(future, ex));
+                    return future;
+                } else if (conflicts(state, plan)) {
+                    pending.add(new Pending(state, plan, launcher, future));
+                    return future;
+                }
+
+                start(state, plan);
+            }
+        }
+
+        if (nested) return launcher.apply(plan);
+        run(plan, launcher, future);
+        return future;
+    }
+
+    /**
+     * Marks a launch that was admitted by this coordinator as finished. Any
+     * thread waiting for it is woken up, and launches that were waiting for
+     * it to finish are started.
+     *
+     * @param plan     the plan that has been launched
+     * @param failure  the exception that the launch failed with, or
+     *                 {@code null} if it succeeded
+     */
+    void release(PhasePlan plan, Throwable failure) {
+        final CompletableFuture<Void> completion;
+        final List<Pending> ready;
+
+        synchronized (this) {
+            final Slot slot = slots.remove(plan);
+            slot.running = false;
+            slot.state   = null;
+            slot.failure = failure;
+
+            completion = slot.completion;
+            slot.completion = null;
+            if (slot.joiners == 0) recycle(slot);
+
+            active.remove(plan);
+            ready = pending.isEmpty() ? emptyList() : admit();
+            notifyAll();
+        }
+
+        if (completion != null) complete(completion, failure);
+        for (final Pending waiting : ready) {
+            run(waiting.plan, waiting.launcher, waiting.future);
+        }
+    }
+
+    /**
+     * Removes every pending asynchronous launch that can now be started or
+     * joined from the queue, in the order they were requested.
+     *
+     * @return  the launches that have been admitted and should be started
+     */
+    private List<Pending> admit() {
+        final List<Pending> ready = new ArrayList<>();
+        for (int i = 0; i < pending.size(); ) {
+            final Pending waiting = pending.get(i);
+            final Slot slot = slots.get(waiting.plan);
+
+            if (slot != null) {
+                slot.completion().whenComplete((v, ex) ->
+                    complete(waiting.future, ex));
+            } else if (!conflicts(waiting.state, waiting.plan)) {
+                start(waiting.state, waiting.plan);
+                ready.add(waiting);
+            } else {
+                i++;
+                continue;
+            }
+
+            pending.remove(i);
+        }
+        return ready;
+    }
+
+    private void run(PhasePlan plan,
+                     Function<PhasePlan, CompletableFuture<Void>> launcher,
+                     CompletableFuture<Void> future) {
+
+        final CompletableFuture<Void> launched;
+        final PhasePlan previous = enter(plan);
+        try {
+            launched = launcher.apply(plan);
+        } catch (final RuntimeException ex) {
+            release(plan, ex);
+            future.completeExceptionally(ex);
+            return;
+        } finally {
+            exit(previous);
+        }
+
+        launched.whenComplete((v, ex) -> {
+            release(plan, ex);
+            complete(future, ex);
+        });
+    }
+
+    private void start(RocketState<?> state, PhasePlan plan) {
+        final int last = spare.size() - 1;
+        final Slot slot = last < 0 ? new Slot() : spare.remove(last);
+        slot.running = true;
+        slot.state   = state;
+        slot.failure = null;
+        slots.put(plan, slot);
+        active.add(plan);
+    }
+
+    private void recycle(Slot slot) {
+        slot.failure = null;
+        spare.add(slot);
+    }
+
+    /**
+     * Returns {@code true} if the calling thread is invoking an action of a
+     * launch that is running in this coordinator.
+     *
+     * @return  {@code true} if a launch by this thread would be nested
+     */
+    private boolean isNested() {
+        final PhasePlan owner = OWNER.get();
+        if (owner == null) return false;
+        for (int i = 0; i < active.size(); i++) {
+            if (active.get(i) == owner) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if some running plan invokes a method on any of
+     * the instances of the specified plan. Plans that belong to a different
+     * state are always considered to conflict, since the instances of two
+     * states can not be compared.
+     *
+     * @param state  the state of the plan
+     * @param plan   the plan to check
+     * @return       {@code true} if the plan can not be launched yet
+     */
+    private boolean conflicts(RocketState<?> state, PhasePlan plan) {
+        for (int i = 0; i < active.size(); i++) {
+            final PhasePlan other = active.get(i);
+            if (slots.get(other).state != state
+            ||  state.footprint(other).intersects(state.footprint(plan))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean await() {
+        try {
+            wait();
+            return false;
+        } catch (final InterruptedException ex) {
+            return true;
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable failure) {
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure instanceof RuntimeException) {
+            return (RuntimeException) failure;
+        } else {
+            return new RocketException("Error launching phase.", failure);
+        }
+    }
+
+    private static void complete(CompletableFuture<Void> future,
+                                 Throwable failure) {
+        if (failure == null) {
+            future.complete(null);
+        } else {
+            future.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * The coordination state of a single launch of a plan. Every field is
+     * guarded by the coordinator.
+     */
+    private static final class Slot {
+
+        private boolean running;
+        private int joiners;
+        private RocketState<?> state; // Null if not running
+        private Throwable failure; // Outcome of the last launch
+        private CompletableFuture<Void> completion; // Created when joined
+
+        private CompletableFuture<Void> completion() {
+            if (completion == null) completion = new CompletableFuture<>();
+            return completion;
+        }
+    }
+
+    /**
+     * An asynchronous launch that is waiting for a conflicting launch to
+     * finish before it can be started.
+     */
+    private static final class Pending {
+
+        private final RocketState<?> state;
+        private final PhasePlan plan;
+        private final Function<PhasePlan, CompletableFuture<Void>> launcher;
+        private final CompletableFuture<Void> future;
+
+        Pending(RocketState<?> state,
+                PhasePlan plan,
+                Function<PhasePlan, CompletableFuture<Void>> launcher,
+                CompletableFuture<Void> future) {
+
+            this.state    = requireNonNull(state);
+            this.plan     = requireNonNull(plan);
+            this.launcher = requireNonNull(launcher);
+            this.future   = requireNonNull(future);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The measured durations of the actions in a {@link PhasePlan}, used to
+ * decide which ready action to dispatch first when the phase is launched in
+ * parallel. The priority of an action is the length of the longest chain of
+ * actions from it to the end of the phase (the bottom level in HLFET list
+ * scheduling), so the actions that the rest of the phase waits for the
+ * longest are started first.
+ * <p>
+ * Until an action has been measured, it is counted as taking one
+ * nanosecond, which makes the priority the number of actions in the longest
+ * chain. The priorities are recomputed after the first 2<sup>k</sup>
+ * launches up to {@value #LAST_REBALANCE} while the durations are settling,
+ * and after that once every {@value #LAST_REBALANCE} launches. Two buffers
+ * are used in turn, so nothing is allocated in the steady state.
+ * <p>
+ * The schedule also decides which worker owns each component instance when
+ * the plan is launched on {@link AffinityWorkers}. The instances are
+ * partitioned using the longest-processing-time-first rule on the measured
+ * cost of their actions. To keep every instance on the same worker, the
+ * partition is only recomputed while the durations are still settling,
+ * after the first 2<sup>k</sup> launches up to {@value #LAST_REBALANCE}.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class LaunchSchedule {
+
+    private static final int LAST_REBALANCE = 256;
+
+    private final PhasePlan plan;
+    private final AtomicLongArray durations;
+    private volatile long[] priorities;
+    private long[] spare; // Guarded by this, null until the second update
+    private volatile int[] assignment;
+    private int assignedWorkers;
+    private int launches;
+
+    LaunchSchedule(PhasePlan plan) {
+        this.plan      = requireNonNull(plan);
+        this.durations = new AtomicLongArray(plan.size());
+        update();
+    }
+
+    /**
+     * Records the measured duration of an action. The estimate is a moving
+     * average so that a single slow launch does not change the schedule
+     * entirely.
+     *
+     * @param action  the action index
+     * @param nanos   the measured duration in nanoseconds
+     */
+    void record(int action, long nanos) {
+        final long measured = Math.max(1, nanos);
+        durations.accumulateAndGet(action, measured, (old, now) ->
+            old == 0 ? now : old + (now - old) / 4
+        );
+    }
+
+    /**
+     * Returns the estimated duration of an action, or {@code 0} if it has
+     * not been measured yet.
+     *
+     * @param action  the action index
+     * @return        the estimated duration in nanoseconds
+     */
+    long duration(int action) {
+        return durations.get(action);
+    }
+
+    /**
+     * Returns the priority of an action. Actions with a higher priority
+     * should be dispatched before actions with a lower one.
+     *
+     * @param action  the action index
+     * @return        the priority
+     */
+    long priority(int action) {
+        return priorities[action];
+    }
+
+    /**
+     * Called after every successful launch of the plan. If it is time to,
+     * the priorities are recomputed from the recorded durations. Since the
+     * actions of the plan are in topological order, this is done in a single
+     * backwards pass over the graph, into the buffer that is not currently
+     * in use.
+     */
+    synchronized void update() {
+        // The constructor counts as the first update.
+        final int count = ++launches;
+        final boolean settling = count <= LAST_REBALANCE
+            && Integer.bitCount(count) == 1;
+
+        if (settling) {
+            assignment = null;
+        } else if (count % LAST_REBALANCE != 0) {
+            return;
+        }
+
+        final int n = plan.size();
+        final long[] levels = spare == null ? new long[n] : spare;
+
+        for (int i = n - 1; i >= 0; i--) {
+            long longest = 0;
+            for (final int dependent : plan.dependents(i)) {
+                longest = Math.max(longest, levels[dependent]);
+            }
+            levels[i] = Math.max(1, durations.get(i)) + longest;
+        }
+
+        spare      = priorities;
+        priorities = levels;
+    }
+
+    /**
+     * Returns the index of the worker that should invoke each action when
+     * the plan is launched on the specified number of workers. All the
+     * actions on the same instance are assigned to the same worker.
+     *
+     * @param workers  the number of workers
+     * @return         the worker index for every action
+     */
+    int[] assignment(int workers) {
+        final int[] result = assignment;
+        if (result != null && assignedWorkers == workers) {
+            return result;
+        }
+
+        synchronized (this) {
+            if (assignment == null || assignedWorkers != workers) {
+                assignedWorkers = workers;
+                assignment = partition(workers);
+            }
+            return assignment;
+        }
+    }
+
+    /**
+     * Partitions the instances of the plan between the workers. The
+     * instances are assigned in order of decreasing cost, each one to the
+     * worker with the least total cost so far.
+     *
+     * @param workers  the number of workers
+     * @return         the worker index for every action
+     */
+    private int[] partition(int workers) {
+        final int n = plan.size();
+        final int[] groups = new int[n];
+        final Map<Object, Integer> owners = new IdentityHashMap<>();
+        long[] costs = new long[16];
+
+        for (int i = 0; i < n; i++) {
+            final Integer group = owners.computeIfAbsent(
+                plan.action(i).instance(), k -> owners.size());
+
+            if (group == costs.length) {
+                costs = Arrays.copyOf(costs, group * 2);
+            }
+
+            groups[i] = group;
+            costs[group] += Math.max(1, durations.get(i));
+        }
+
+        final long[] cost = costs;
+        final Integer[] order = new Integer[owners.size()];
+        for (int g = 0; g < order.length; g++) order[g] = g;
+        Arrays.sort(order, (a, b) -> cost[a] != cost[b]
+            ? Long.compare(cost[b], cost[a])
+            : Integer.compare(a, b));
+
+        final long[] loads = new long[workers];
+        final int[] owner = new int[order.length];
+        for (final int group : order) {
+            int lightest = 0;
+            for (int w = 1; w < workers; w++) {
+                if (loads[w] < loads[lightest]) lightest = w;
+            }
+            owner[group] = lightest;
+            loads[lightest] += cost[group];
+        }
+
+        final int[] result = new int[n];
+        for (int i = 0; i < n; i++) result[i] = owner[groups[i]];
+        return result;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.PhaseGraph;
+import com.github.pyknic.rocket.RocketListener;
+
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Listener that notifies several other listeners in the order they were
+ * registered.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class ListenerChain implements RocketListener {
+
+    private final RocketListener[] listeners;
+
+    /**
+     * Returns a single listener that notifies all the specified listeners,
+     * or {@code null} if the list is empty.
+     *
+     * @param listeners  the listeners
+     * @return           the combined listener or {@code null}
+     */
+    static RocketListener of(List<RocketListener> listeners) {
+        switch (listeners.size()) {
+            case 0  : return null;
+            case 1  : return listeners.get(0);
+            default : return new ListenerChain(listeners);
+        }
+    }
+
+    private ListenerChain(List<RocketListener> listeners) {
+        this.listeners = requireNonNull(listeners)
+            .toArray(new RocketListener[0]);
+    }
+
+    @Override
+    public void beforeCompile(String phase) {
+        for (final RocketListener l : listeners) {
+            l.beforeCompile(phase);
+        }
+    }
+
+    @Override
+    public void afterCompile(PhaseGraph phase, long nanos) {
+        for (final RocketListener l : listeners) {
+            l.afterCompile(phase, nanos);
+        }
+    }
+
+    @Override
+    public void compileFailed(String phase, long nanos, Throwable cause) {
+        for (final RocketListener l : listeners) {
+            l.compileFailed(phase, nanos, cause);
+        }
+    }
+
+    @Override
+    public void beforePhase(PhaseGraph phase) {
+        for (final RocketListener l : listeners) {
+            l.beforePhase(phase);
+        }
+    }
+
+    @Override
+    public void afterPhase(PhaseGraph phase, long nanos) {
+        for (final RocketListener l : listeners) {
+            l.afterPhase(phase, nanos);
+        }
+    }
+
+    @Override
+    public void phaseFailed(PhaseGraph phase, long nanos, Throwable cause) {
+        for (final RocketListener l : listeners) {
+            l.phaseFailed(phase, nanos, cause);
+        }
+    }
+
+    @Override
+    public void beforeAction(PhaseGraph phase, int action) {
+        for (final RocketListener l : listeners) {
+            l.beforeAction(phase, action);
+        }
+    }
+
+    @Override
+    public void afterAction(PhaseGraph phase, int action, long nanos) {
+        for (final RocketListener l : listeners) {
+            l.afterAction(phase, action, nanos);
+        }
+    }
+
+    @Override
+    public void actionFailed(PhaseGraph phase, int action,
+                             long nanos, Throwable cause) {
+        for (final RocketListener l : listeners) {
+            l.actionFailed(phase, action, nanos, cause);
+        }
+    }
+}
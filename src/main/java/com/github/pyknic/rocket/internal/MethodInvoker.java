@@ -0,0 +1,134 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.ExecutePlan;
+import com.github.pyknic.rocket.RocketException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Action that invokes an annotated method on a particular instance with a
+ * fixed set of arguments. The instance and the arguments are bound to a
+ * {@link MethodHandle} once so that no arrays have to be allocated and no
+ * reflective access checks have to be made when the action is invoked.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class MethodInvoker extends Action {
+
+    private static final MethodHandle NULL =
+        MethodHandles.constant(Object.class, null);
+
+    private final MethodHandle handle;
+
+    /**
+     * Creates an invoker for the specified method.
+     *
+     * @param name      the display name of the action
+     * @param blocking  whether the method is marked as blocking
+     * @param method    the method to invoke
+     * @param instance  the instance to invoke the method on
+     * @param args      the arguments to invoke the method with
+     *
+     * @throws RocketException  if the method could not be accessed
+     */
+    MethodInvoker(String name,
+                  boolean blocking,
+                  Method method,
+                  Object instance,
+                  Object... args) {
+
+        super(name, blocking, instance, args);
+
+        try {
+            method.setAccessible(true);
+            this.handle = MethodHandles.insertArguments(
+                dropPrimitive(MethodHandles.lookup().unreflect(method))
+                    .bindTo(instance),
+                0, args
+            ).asType(methodType(Object.class));
+        } catch (final IllegalAccessException | RuntimeException ex) {
+            throw new RocketException(
+                "Could not access annotated method " + name + ".", ex);
+        }
+    }
+
+    /**
+     * Binds the specified method to each of the specified instances and the
+     * same arguments. The method is only looked up once, and every instance
+     * is bound to the resulting handle when it is invoked.
+     *
+     * @param name       the display name of the action
+     * @param method     the method to invoke
+     * @param instances  the instances to invoke the method on
+     * @param args       the arguments to invoke the method with
+     * @return           one invocation for each instance
+     *
+     * @throws RocketException  if the method could not be accessed
+     */
+    static ExecutePlan.Invocation[] bindAll(String name,
+                                            Method method,
+                                            Object[] instances,
+                                            Object... args) {
+        final MethodHandle handle;
+        try {
+            method.setAccessible(true);
+            handle = MethodHandles.insertArguments(
+                dropPrimitive(MethodHandles.lookup().unreflect(method)), 1, args
+            ).asType(methodType(Object.class, Object.class));
+        } catch (final IllegalAccessException | RuntimeException ex) {
+            throw new RocketException(
+                "Could not access annotated method " + name + ".", ex);
+        }
+
+        final ExecutePlan.Invocation[] result =
+            new ExecutePlan.Invocation[instances.length];
+
+        for (int i = 0; i < instances.length; i++) {
+            final Object instance = instances[i];
+            result[i] = () -> (Object) handle.invokeExact(instance);
+        }
+
+        return result;
+    }
+
+    /**
+     * Makes the specified handle return {@code null} instead of a primitive
+     * value. Only a returned {@link java.util.concurrent.CompletionStage} is
+     * ever used, so there is no reason to box the value on every invocation.
+     *
+     * @param handle  the handle of the method
+     * @return        a handle that does not return a primitive value
+     */
+    private static MethodHandle dropPrimitive(MethodHandle handle) {
+        final Class<?> type = handle.type().returnType();
+        if (!type.isPrimitive() || type == void.class) return handle;
+        return MethodHandles.filterReturnValue(handle,
+            MethodHandles.dropArguments(NULL, 0, type));
+    }
+
+    @Override
+    Object call() throws Throwable {
+        return (Object) handle.invokeExact();
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.RocketListener;
+
+import java.util.concurrent.Executor;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A single launch of a {@link PhasePlan} where every action is submitted to
+ * an {@link Executor} as soon as all of its dependencies have finished.
+ * <p>
+ * Ready actions are kept in a priority queue and every task submitted to the
+ * executor takes the ready action with the highest priority in the
+ * {@link LaunchSchedule} of the plan, so that actions on the critical path
+ * are started first even if the executor is busy. Actions that are marked as
+ * blocking are submitted directly to the executor for blocking actions.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class ParallelLaunch extends ConcurrentLaunch {
+
+    private final Executor executor;
+    private final ReadyQueue ready;
+
+    ParallelLaunch(PhasePlan plan,
+                   Executor executor,
+                   Executor blocking,
+                   RocketListener listener) {
+
+        super(plan, blocking, listener);
+        this.executor = requireNonNull(executor);
+        this.ready    = new ReadyQueue(schedule, plan.size());
+    }
+
+    @Override
+    boolean enqueue(int index) {
+        if (plan.action(index).blocking()) {
+            execute(blocking, index);
+            return false;
+        } else {
+            ready.add(index);
+            return true;
+        }
+    }
+
+    /**
+     * Submits one task to the executor for every action that was enqueued.
+     * Each task invokes the ready action with the highest priority at the
+     * time it runs.
+     *
+     * @param count  the number of actions in the ready queue
+     */
+    @Override
+    void flush(int count) {
+        for (int i = 0; i < count; i++) {
+            try {
+                executor.execute(() -> invoke(ready.poll()));
+            } catch (final RuntimeException ex) {
+                rejected(ex);
+            }
+        }
+    }
+
+    /**
+     * Binary max-heap of action indices ordered by their priority in a
+     * {@link LaunchSchedule}. Actions with the same priority are ordered by
+     * their index.
+     */
+    private static final class ReadyQueue {
+
+        private final LaunchSchedule schedule;
+        private final int[] heap;
+        private int size;
+
+        ReadyQueue(LaunchSchedule schedule, int capacity) {
+            this.schedule = requireNonNull(schedule);
+            this.heap     = new int[capacity];
+        }
+
+        synchronized void add(int action) {
+            int i = size++;
+            while (i > 0) {
+                final int parent = (i - 1) >>> 1;
+                if (!before(action, heap[parent])) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = action;
+        }
+
+        synchronized int poll() {
+            final int result = heap[0];
+            final int last = heap[--size];
+
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && before(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!before(heap[child], last)) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+
+            heap[i] = last;
+            return result;
+        }
+
+        private boolean before(int a, int b) {
+            final long pa = schedule.priority(a), pb = schedule.priority(b);
+            return pa > pb || (pa == pb && a < b);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.PhaseGraph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * The resolved actions of a single phase together with the dependency graph
+ * between them. Actions are identified by their index in the sequential
+ * launch order, which is always a valid topological order of the graph.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class PhasePlan implements PhaseGraph {
+
+    private static final int[] NO_INDICES = {};
+
+    private final String phase;
+    private final Action[] actions;
+    private final int[][] dependencies;
+    private final int[] dependencyCounts;
+    private final int[][] dependents;
+    private final int[] roots;
+    private volatile LaunchSchedule schedule;
+
+    /**
+     * Creates a new plan.
+     *
+     * @param phase         the name of the phase
+     * @param actions       the actions in sequential launch order
+     * @param dependencies  for each action, the indices of the actions that
+     *                      must finish before it can be invoked
+     */
+    PhasePlan(String phase,
+              Action[] actions,
+              int[][] dependencies) {
+
+        this.phase        = requireNonNull(phase);
+        this.actions      = requireNonNull(actions);
+        this.dependencies = requireNonNull(dependencies);
+
+        final int n = actions.length;
+        this.dependencyCounts = new int[n];
+
+        // Count the outgoing edges so that the dependents can be stored as
+        // compact arrays.
+        final int[] outgoing = new int[n];
+        int rootCount = 0;
+        for (int i = 0; i < n; i++) {
+            dependencyCounts[i] = dependencies[i].length;
+            if (dependencyCounts[i] == 0) rootCount++;
+            for (final int dep : dependencies[i]) outgoing[dep]++;
+        }
+
+        this.dependents = new int[n][];
+        for (int i = 0; i < n; i++) {
+            dependents[i] = outgoing[i] == 0 ? NO_INDICES : new int[outgoing[i]];
+            outgoing[i] = 0;
+        }
+
+        this.roots = new int[rootCount];
+        for (int i = 0, r = 0; i < n; i++) {
+            if (dependencyCounts[i] == 0) roots[r++] = i;
+            for (final int dep : dependencies[i]) {
+                dependents[dep][outgoing[dep]++] = i;
+            }
+        }
+    }
+
+    /**
+     * Combines the plans of several phases into a single plan that can be
+     * launched as one graph. Every action keeps the dependencies it has
+     * within its own phase, and also waits for the last action in an earlier
+     * phase on the same instance and on each of its arguments. The phase
+     * barriers are thereby replaced by per-instance edges, so an instance can
+     * move on to the next phase as soon as it and the instances it depends on
+     * are done with the previous ones.
+     *
+     * @param plans  the plans in the order the phases should be launched
+     * @return       the combined plan
+     */
+    static PhasePlan sequence(PhasePlan... plans) {
+        int total = 0;
+        for (final PhasePlan plan : plans) total += plan.size();
+
+        final Action[] actions = new Action[total];
+        final int[][] dependencies = new int[total][];
+
+        // The index of the last action on every instance in the phases that
+        // have been added so far.
+        final Map<Object, Integer> latest = new IdentityHashMap<>();
+        final Map<Object, Integer> current = new IdentityHashMap<>();
+
+        int offset = 0;
+        for (final PhasePlan plan : plans) {
+            for (int i = 0; i < plan.size(); i++) {
+                final Action action = plan.action(i);
+                final IntStream.Builder deps = IntStream.builder();
+
+                for (final int dep : plan.dependencies(i)) {
+                    deps.accept(offset + dep);
+                }
+
+                final Integer prev = latest.get(action.instance());
+                if (prev != null) deps.accept(prev);
+
+                for (final Object arg : action.arguments()) {
+                    final Integer resolver = latest.get(arg);
+                    if (resolver != null) deps.accept(resolver);
+                }
+
+                actions[offset + i]      = action;
+                dependencies[offset + i] = deps.build().distinct().sorted().toArray();
+                current.put(action.instance(), offset + i);
+            }
+
+            latest.putAll(current);
+            current.clear();
+            offset += plan.size();
+        }
+
+        final String phase = Arrays.stream(plans)
+            .map(PhasePlan::phase)
+            .collect(joining("+"));
+
+        return new PhasePlan(phase, actions, dependencies);
+    }
+
+    /**
+     * Returns a plan with only the specified actions and every action that
+     * they depend on, directly or indirectly. The actions keep the order
+     * they have in this plan.
+     *
+     * @param targets  the indices of the actions that must be included
+     * @return         the plan for the closure of the targets
+     */
+    PhasePlan closure(BitSet targets) {
+        // Since every action comes after its dependencies, the closure can
+        // be found in a single backwards pass.
+        final BitSet included = (BitSet) targets.clone();
+        for (int i = included.length() - 1; i >= 0;
+                 i = included.previousSetBit(i - 1)) {
+            for (final int dep : dependencies[i]) included.set(dep);
+        }
+
+        final int[] remapped = new int[actions.length];
+        final Action[] subset = new Action[included.cardinality()];
+        final int[][] subsetDeps = new int[subset.length][];
+
+        for (int i = included.nextSetBit(0), j = 0; i >= 0;
+                 i = included.nextSetBit(i + 1), j++) {
+
+            remapped[i]   = j;
+            subset[j]     = actions[i];
+            subsetDeps[j] = new int[dependencies[i].length];
+            for (int k = 0; k < dependencies[i].length; k++) {
+                subsetDeps[j][k] = remapped[dependencies[i][k]];
+            }
+        }
+
+        return new PhasePlan(phase, subset, subsetDeps);
+    }
+
+    @Override
+    public String phase() {
+        return phase;
+    }
+
+    @Override
+    public int actionCount() {
+        return actions.length;
+    }
+
+    @Override
+    public String actionName(int action) {
+        return actions[action].name();
+    }
+
+    @Override
+    public int[] dependenciesOf(int action) {
+        return dependencies[action].clone();
+    }
+
+    @Override
+    public int[] dependentsOf(int action) {
+        return dependents[action].clone();
+    }
+
+    int size() {
+        return actions.length;
+    }
+
+    Action action(int index) {
+        return actions[index];
+    }
+
+    /**
+     * Returns the indices of the actions that must finish before the action
+     * with the specified index can be invoked. The returned array must not be
+     * modified.
+     *
+     * @param index  the action index
+     * @return       indices of the dependencies
+     */
+    int[] dependencies(int index) {
+        return dependencies[index];
+    }
+
+    /**
+     * Returns the number of actions that must finish before the action with
+     * the specified index can be invoked.
+     *
+     * @param index  the action index
+     * @return       number of dependencies
+     */
+    int dependencyCount(int index) {
+        return dependencyCounts[index];
+    }
+
+    /**
+     * Returns the indices of the actions that depend on the action with the
+     * specified index. The returned array must not be modified.
+     *
+     * @param index  the action index
+     * @return       indices of the dependent actions
+     */
+    int[] dependents(int index) {
+        return dependents[index];
+    }
+
+    /**
+     * Returns the schedule with the measured durations of the actions in
+     * this plan, creating it the first time it is requested.
+     *
+     * @return  the schedule
+     */
+    LaunchSchedule schedule() {
+        LaunchSchedule result = schedule;
+        if (result == null) {
+            synchronized (this) {
+                result = schedule;
+                if (result == null) {
+                    schedule = result = new LaunchSchedule(this);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the indices of the actions that has no dependencies. The
+     * returned array must not be modified.
+     *
+     * @return  indices of the root actions
+     */
+    int[] roots() {
+        return roots;
+    }
+}
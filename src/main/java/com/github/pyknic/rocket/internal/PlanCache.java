@@ -0,0 +1,316 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.internal.ClassMetadata.ExecuteMethod;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Arrays.asList;
+
+/**
+ * Stores the compiled plans of a {@link RocketState} in a binary file so that
+ * the next time the same instances are built, the order of the actions and
+ * their arguments can be read from the file instead of being resolved again.
+ * <p>
+ * The file starts with a fingerprint of the phases enum, the classes of the
+ * installed instances in the order they were installed, the ancestors of
+ * those classes and the signatures of their annotated methods. If anything
+ * that could change a plan is different, the fingerprint doesn't match and
+ * the file is ignored. After the fingerprint, every phase is stored as a list
+ * of actions in launch order, where each action has the index of the maker
+ * it came from, the sweep it was taken in, the indices of the instances it
+ * has as arguments and the indices of the actions it depends on.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class PlanCache {
+
+    private static final Logger LOGGER =
+        Logger.getLogger(PlanCache.class.getName());
+
+    private static final int MAGIC = 0x524B5043; // "RKPC"
+    private static final int VERSION = 1;
+    private static final int FINGERPRINT_LENGTH = 32;
+
+    private PlanCache() {}
+
+    /**
+     * Computes the fingerprint of everything that the plans built from the
+     * specified instances depend on.
+     *
+     * @param phases     every phase, in ordinal order
+     * @param instances  the instances, in the order they were installed
+     * @return           the fingerprint
+     */
+    static byte[] fingerprint(Enum<?>[] phases, List<Object> instances) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(
+                "SHA-256 is required by every Java platform.", ex);
+        }
+
+        update(digest, "rocket-plan-cache:" + VERSION);
+        update(digest, phases.getClass().getComponentType().getName());
+        for (final Enum<?> phase : phases) update(digest, phase.name());
+
+        // The position of every instance, and if it was installed before.
+        final Map<Object, Integer> first = new IdentityHashMap<>();
+        final Set<Class<?>> classes = new LinkedHashSet<>();
+        for (int i = 0; i < instances.size(); i++) {
+            final Object instance = instances.get(i);
+            final Integer previous = first.putIfAbsent(instance, i);
+            update(digest, instance.getClass().getName());
+            update(digest, String.valueOf(previous == null ? i : previous));
+            classes.add(instance.getClass());
+        }
+
+        // Everything about the classes that is used to resolve a plan.
+        for (final Class<?> clazz : classes) {
+            update(digest, clazz.getName());
+            for (final Class<?> c : TypeIds.ancestors(clazz)) {
+                update(digest, c.getName());
+            }
+
+            final ClassMetadata metadata = ClassMetadata.of(clazz);
+            for (final Enum<?> phase : phases) {
+                for (final ExecuteMethod em : metadata.methods(phase.name())) {
+                    update(digest, phase.name());
+                    update(digest, em.methodName());
+                    em.parameterTypes().forEach(c -> update(digest, c.getName()));
+                }
+            }
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * Loads the plans for the specified instances from the specified file.
+     * If the file does not exist, was created for other instances or could
+     * not be read, {@code null} is returned.
+     *
+     * @param <E>          the phase category enum
+     * @param file         the cache file
+     * @param phases       every phase, in ordinal order
+     * @param instances    the instances, in the order they were installed
+     * @param fingerprint  the fingerprint of the instances
+     * @return             the loaded state, or {@code null}
+     */
+    static <E extends Enum<E>> RocketState<E> load(Path file,
+                                                   E[] phases,
+                                                   List<Object> instances,
+                                                   byte[] fingerprint) {
+
+        if (!Files.isRegularFile(file)) return null;
+
+        try (final FileChannel channel = FileChannel.open(file, READ)) {
+            final MappedByteBuffer buffer = channel.map(
+                FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            final byte[] stored = new byte[FINGERPRINT_LENGTH];
+            if (buffer.getInt() != MAGIC
+            ||  buffer.getInt() != VERSION
+            ||  !Arrays.equals(fingerprint, read(buffer, stored))
+            ||  buffer.getInt() != phases.length) {
+                LOGGER.fine("Plan cache " + file + " is out of date.");
+                return null;
+            }
+
+            final CompiledPhase[] compiled = new CompiledPhase[phases.length];
+            for (final E phase : phases) {
+                compiled[phase.ordinal()] = read(buffer, phase, instances);
+            }
+
+            return RocketState.restore(phases, instances, compiled);
+        } catch (final IOException | RuntimeException ex) {
+            LOGGER.log(Level.FINE, "Could not load plan cache " + file + ".", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the plans of every phase in the specified state to the
+     * specified file, compiling any phase that has not been compiled yet.
+     * The file is replaced atomically if the file system supports it. If
+     * the file could not be written, a warning is logged.
+     *
+     * @param <E>          the phase category enum
+     * @param file         the cache file
+     * @param state        the state to store
+     * @param fingerprint  the fingerprint of the instances in the state
+     */
+    static <E extends Enum<E>> void store(Path file,
+                                          RocketState<E> state,
+                                          byte[] fingerprint) {
+
+        final Map<Object, Integer> indices = new IdentityHashMap<>();
+        final List<Object> instances = state.instances();
+        for (int i = 0; i < instances.size(); i++) {
+            indices.putIfAbsent(instances.get(i), i);
+        }
+
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (final DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(fingerprint);
+                out.writeInt(state.phases().length);
+
+                for (final E phase : state.phases()) {
+                    write(out, state.compiled(phase), indices);
+                }
+            }
+
+            final Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            final Path temp = Files.createTempFile(dir,
+                file.getFileName().toString(), ".tmp");
+
+            try {
+                Files.write(temp, bytes.toByteArray());
+                try {
+                    Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+                } catch (final AtomicMoveNotSupportedException ex) {
+                    Files.move(temp, file, REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (final IOException ex) {
+            LOGGER.log(Level.WARNING,
+                "Could not write plan cache " + file + ".", ex);
+        }
+    }
+
+    private static CompiledPhase read(MappedByteBuffer buffer,
+                                      Enum<?> phase,
+                                      List<Object> instances) {
+
+        // Create the makers in the same order as when building.
+        final List<Object> owners = new ArrayList<>();
+        final List<ExecuteMethod> methods = new ArrayList<>();
+        for (final Object instance : instances) {
+            for (final ExecuteMethod em : ClassMetadata.of(instance.getClass())
+                    .methods(phase.name())) {
+                owners.add(instance);
+                methods.add(em);
+            }
+        }
+
+        final int n = buffer.getInt();
+        if (n != methods.size()) {
+            throw new IllegalStateException(
+                "Expected " + methods.size() + " actions in the " +
+                phase.name() + " phase, but found " + n + ".");
+        }
+
+        final ActionMaker[] makers = new ActionMaker[n];
+        final ActionMaker[] order = new ActionMaker[n];
+        final int[] sweeps = new int[n];
+        final int[][] dependencies = new int[n][];
+
+        for (int i = 0; i < n; i++) {
+            final int position = buffer.getInt();
+            if (makers[position] != null) {
+                throw new IllegalStateException(
+                    "Action " + position + " appears twice in the " +
+                    phase.name() + " phase.");
+            }
+
+            sweeps[i] = buffer.getInt();
+
+            final Object[] args = new Object[buffer.getInt()];
+            for (int j = 0; j < args.length; j++) {
+                args[j] = instances.get(buffer.getInt());
+            }
+
+            final int[] deps = new int[buffer.getInt()];
+            for (int j = 0; j < deps.length; j++) {
+                deps[j] = buffer.getInt();
+                if (deps[j] < 0 || deps[j] >= i) {
+                    throw new IllegalStateException(
+                        "Action " + i + " in the " + phase.name() + " phase " +
+                        "depends on an action that comes after it.");
+                }
+            }
+
+            final Object owner = owners.get(position);
+            final ExecuteMethod em = methods.get(position);
+            makers[position] = new ActionMaker(owner, em, em.invoker(owner, args));
+            order[i] = makers[position];
+            dependencies[i] = deps;
+        }
+
+        return CompiledPhase.restore(phase.name(), asList(makers), order,
+            sweeps, dependencies);
+    }
+
+    private static void write(DataOutputStream out,
+                              CompiledPhase phase,
+                              Map<Object, Integer> indices) throws IOException {
+
+        final List<ActionMaker> makers = phase.makers();
+        final Map<ActionMaker, Integer> positions = new IdentityHashMap<>();
+        for (int i = 0; i < makers.size(); i++) positions.put(makers.get(i), i);
+
+        final PhasePlan plan = phase.plan();
+        out.writeInt(plan.size());
+        for (int i = 0; i < plan.size(); i++) {
+            out.writeInt(positions.get(phase.maker(i)));
+            out.writeInt(phase.sweep(i));
+
+            final Object[] args = plan.action(i).arguments();
+            out.writeInt(args.length);
+            for (final Object arg : args) out.writeInt(indices.get(arg));
+
+            final int[] deps = plan.dependencies(i);
+            out.writeInt(deps.length);
+            for (final int dep : deps) out.writeInt(dep);
+        }
+    }
+
+    private static byte[] read(MappedByteBuffer buffer, byte[] into) {
+        buffer.get(into);
+        return into;
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.ExecutePlan;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Action that invokes an annotated method through an invocation bound by a
+ * generated {@link ExecutePlan}.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class PlanInvoker extends Action {
+
+    private final ExecutePlan.Invocation invocation;
+
+    PlanInvoker(String name,
+                boolean blocking,
+                Object instance,
+                Object[] args,
+                ExecutePlan.Invocation invocation) {
+
+        super(name, blocking, instance, args);
+        this.invocation = requireNonNull(invocation);
+    }
+
+    @Override
+    Object call() throws Throwable {
+        return invocation.invoke();
+    }
+}
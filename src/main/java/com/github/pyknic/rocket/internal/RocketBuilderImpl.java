@@ -16,24 +16,18 @@
  */
 package com.github.pyknic.rocket.internal;
 
-import com.github.pyknic.rocket.Execute;
 import com.github.pyknic.rocket.Rocket;
 import com.github.pyknic.rocket.RocketBuilder;
-import com.github.pyknic.rocket.RocketException;
+import com.github.pyknic.rocket.RocketListener;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Modifier;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.function.Supplier;
-import java.util.stream.Stream;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import static com.github.pyknic.rocket.internal.util.ReflectionUtil.traverseAncestors;
-import static com.github.pyknic.rocket.internal.util.ReflectionUtil.traverseMethods;
 import static java.lang.String.format;
-import static java.util.Arrays.asList;
-import static java.util.Collections.*;
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.joining;
 
 /**
  * @author Emil Forslund
@@ -41,12 +35,24 @@ import static java.util.stream.Collectors.joining;
  */
 public final class RocketBuilderImpl<E extends Enum<E>> implements RocketBuilder<E> {
 
+    private static final Logger LOGGER =
+        Logger.getLogger(RocketBuilderImpl.class.getName());
+
     private final Class<E> phasesEnum;
     private final List<Object> instances;
+    private final List<RocketListener> listeners;
+    private Executor executor; // Nullable
+    private Executor blocking; // Nullable
+    private int affinity;
+    private boolean lazy;
+    private boolean parallel;
+    private boolean bulk;
+    private Path planCache; // Nullable
 
     public RocketBuilderImpl(Class<E> phasesEnum) {
         this.phasesEnum = requireNonNull(phasesEnum);
         this.instances  = new LinkedList<>();
+        this.listeners  = new ArrayList<>();
     }
 
     @Override
@@ -56,130 +62,106 @@ public final class RocketBuilderImpl<E extends Enum<E>> implements RocketBuilder
     }
 
     @Override
-    public Rocket<E> build() {
-        final Map<E, List<Runnable>> actions = new EnumMap<>(phasesEnum);
-        final E[] phases = phasesEnum.getEnumConstants();
-
-        for (final E phase : phases) {
-            final List<Runnable> phaseActions = new LinkedList<>();
-
-            final String phaseName = phase.name();
-            final List<ActionMaker> actionMakers = new LinkedList<>();
-
-            instances.forEach(inst ->
-                traverseMethods(inst.getClass())
-                    .filter(m -> !Modifier.isStatic(m.getModifiers()))
-                    .filter(m -> {
-                        final Execute execute = m.getAnnotation(Execute.class);
-                        return execute != null
-                            && phaseName.equalsIgnoreCase(execute.value());
-                    }).forEachOrdered(m -> {
-                        final Set<Class<?>> deps =
-                            new HashSet<>(asList(m.getParameterTypes()));
-
-                        final String name = format("%s#%s(%s)",
-                            inst.getClass().getSimpleName(),
-                            m.getName(),
-                            Stream.of(m.getParameterTypes())
-                                .map(Class::getSimpleName)
-                                .collect(joining(", "))
-                        );
-
-                        // Create a node for this action.
-                        actionMakers.add(new ActionMaker(inst.getClass(),
-                            name, deps, () -> {
-                                // Resolve every argument.
-                                final Object[] args = Stream.of(m.getParameterTypes())
-                                    .map(c -> instances.stream()
-                                        .filter(c::isInstance).findFirst()
-                                        .orElseThrow(() -> new RocketException(format(
-                                            "Class '%s' has a method '%s' that has " +
-                                            "the @Execute-annotation but one argument" +
-                                            " '%s' can't be resolved. Make sure it " +
-                                            "is installed in the RocketBuilder.",
-                                            inst.getClass().getName(),
-                                            m.getName(),
-                                            c.getName()
-                                        )))
-                                    ).toArray();
-
-                                m.setAccessible(true);
-                                return () -> {
-                                    try {
-                                        m.invoke(inst, args);
-                                    } catch (final IllegalAccessException
-                                               | InvocationTargetException ex) {
-                                        throw new RocketException(
-                                            "Could not invoke annotated method " +
-                                            name + ".", ex);
-                                    }
-                                };
-                            }));
-                    })
-                );
+    public RocketBuilder<E> executor(Executor executor) {
+        this.executor = requireNonNull(executor);
+        return this;
+    }
 
-            // If there was no actions in this phase, continue.
-            if (!actionMakers.isEmpty()) {
-
-                // Iterate over the action makers, using the makers as they are
-                // possible to invoke.
-                final Set<Class<?>> resolved = new HashSet<>();
-                while (!actionMakers.isEmpty()) {
-                    int counter = 0;
-
-                    final Iterator<ActionMaker> it = actionMakers.iterator();
-                    while (it.hasNext()) {
-                        final ActionMaker am = it.next();
-                        if (!am.dependencies.stream().allMatch(resolved::contains))
-                            continue;
-
-                        phaseActions.add(am.makeAction.get());
-                        traverseAncestors(am.clazz).forEach(resolved::add);
-
-                        it.remove();
-                        counter++;
-                    }
-
-                    if (counter == 0) {
-                        throw new RocketException(
-                            "Error building " + phaseName + " phase. The " +
-                                "following actions appear to be stuck in an " +
-                                "infinite loop: [\n  " +
-                                actionMakers.stream()
-                                    .map(am -> am.name)
-                                    .collect(joining("\n  ")) +
-                                "\n]."
-                        );
-                    }
-                }
-            }
+    @Override
+    public RocketBuilder<E> blockingExecutor(Executor executor) {
+        this.blocking = requireNonNull(executor);
+        return this;
+    }
 
-            switch (phaseActions.size()) {
-                case 0  : actions.put(phase, emptyList()); break;
-                case 1  : actions.put(phase, singletonList(phaseActions.get(0))); break;
-                default : actions.put(phase, unmodifiableList(phaseActions)); break;
-            }
+    @Override
+    public RocketBuilder<E> affinity(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException(
+                "Expected at least one worker, but got " + workers + ".");
         }
 
-        return new RocketImpl<>(actions);
+        this.affinity = workers;
+        return this;
+    }
+
+    @Override
+    public RocketBuilder<E> listener(RocketListener listener) {
+        listeners.add(requireNonNull(listener));
+        return this;
+    }
+
+    @Override
+    public RocketBuilder<E> lazy() {
+        this.lazy = true;
+        return this;
+    }
+
+    @Override
+    public RocketBuilder<E> parallelBuild() {
+        this.parallel = true;
+        return this;
     }
 
-    private static final class ActionMaker {
+    @Override
+    public RocketBuilder<E> bulk() {
+        this.bulk = true;
+        return this;
+    }
 
-        private final Class<?> clazz;
-        private final String name;
-        private final Set<Class<?>> dependencies;
-        private final Supplier<Runnable> makeAction;
+    @Override
+    public RocketBuilder<E> planCache(Path file) {
+        this.planCache = requireNonNull(file);
+        return this;
+    }
 
-        ActionMaker(Class<?> clazz,
-                    String name,
-                    Set<Class<?>> dependencies,
-                    Supplier<Runnable> makeAction) {
+    @Override
+    public Rocket<E> build() {
+        final E[] phases = phasesEnum.getEnumConstants();
+        final RocketListener listener = ListenerChain.of(listeners);
+        final RocketState<E> state;
+
+        if (planCache == null || bulk) {
+            state = RocketState.create(phases, instances, lazy, parallel,
+                bulk, listener);
+        } else {
+            final byte[] fingerprint = PlanCache.fingerprint(phases, instances);
+            final RocketState<E> cached = PlanCache.load(
+                planCache, phases, instances, fingerprint);
+
+            if (cached == null) {
+                state = RocketState.create(phases, instances, false, parallel,
+                    false, listener);
+                PlanCache.store(planCache, state, fingerprint);
+            } else {
+                state = cached;
+            }
+        }
 
-            this.clazz        = requireNonNull(clazz);
-            this.name         = requireNonNull(name);
-            this.dependencies = requireNonNull(dependencies);
-            this.makeAction   = requireNonNull(makeAction);
+        // Log any arguments that could be resolved to more than one instance.
+        if (LOGGER.isLoggable(Level.FINE)) {
+            final TypeIndex types = state.types();
+            final Set<String> ambiguous = new LinkedHashSet<>();
+            state.makers().forEachOrdered(am ->
+                am.method().parameterTypes().stream()
+                    .filter(c -> types.count(c) > 1)
+                    .map(c -> format("%s: %d instances of %s, using %s",
+                        am.name(), types.count(c), c.getSimpleName(),
+                        types.get(c).getClass().getSimpleName()))
+                    .forEachOrdered(ambiguous::add)
+            );
+
+            if (!ambiguous.isEmpty()) {
+                LOGGER.fine(
+                    "Some arguments match more than one installed instance. " +
+                    "The first one installed will be used: [\n  " +
+                    String.join("\n  ", ambiguous) + "\n]."
+                );
+            }
         }
+
+        return new RocketImpl<>(state, executor,
+            affinity == 0 ? null : new AffinityWorkers(affinity),
+            blocking == null ? BlockingPool.INSTANCE : blocking,
+            listener);
     }
-}
\ No newline at end of file
+}
@@ -16,27 +16,220 @@
  */
 package com.github.pyknic.rocket.internal;
 
+import com.github.pyknic.rocket.PhaseGraph;
 import com.github.pyknic.rocket.Rocket;
+import com.github.pyknic.rocket.RocketListener;
+import com.github.pyknic.rocket.TickLoop;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
 import static java.util.Objects.requireNonNull;
 
 /**
+ * Default implementation of the {@link Rocket} interface. The plans are
+ * stored in an array indexed by the ordinal of the phase, and the actions of
+ * each plan in an array in launch order, so launching a phase sequentially
+ * does not allocate any memory.
+ * <p>
+ * All the plans are kept in an immutable {@link RocketState} that is
+ * replaced as a whole when instances are added or removed. Every launch
+ * reads the state once, so it is never affected by concurrent changes.
+ * <p>
+ * Launches made from several threads at the same time are coordinated by a
+ * {@link LaunchCoordinator}, so a plan that is already running is joined
+ * instead of being launched twice, and plans that invoke methods on a common
+ * instance are never running at the same time.
+ *
  * @author Emil Forslund
  * @since  1.0.0
  */
 final class RocketImpl<E extends Enum<E>> implements Rocket<E> {
 
-    private final Map<E, List<Runnable>> actions;
+    private final Executor executor; // Nullable
+    private final AffinityWorkers workers; // Nullable
+    private final Executor blocking;
+    private final RocketListener listener; // Nullable
+    private final LaunchCoordinator coordinator;
+    private volatile RocketState<E> state;
+
+    RocketImpl(RocketState<E> state,
+               Executor executor,
+               AffinityWorkers workers,
+               Executor blocking,
+               RocketListener listener) {
 
-    RocketImpl(Map<E, List<Runnable>> actions) {
-        this.actions = requireNonNull(actions);
+        this.state       = requireNonNull(state);
+        this.executor    = executor;
+        this.workers     = workers;
+        this.blocking    = requireNonNull(blocking);
+        this.listener    = listener;
+        this.coordinator = new LaunchCoordinator();
     }
 
     @Override
     public void launch(E phase) {
-        actions.get(phase).forEach(Runnable::run);
+        final RocketState<E> snapshot = state;
+        launch(snapshot, snapshot.plan(phase));
+    }
+
+    @Override
+    public void launch(E phase, Object... targets) {
+        final RocketState<E> snapshot = state;
+        launch(snapshot, snapshot.closure(phase, targets));
+    }
+
+    @Override
+    public void launch(E phase, Class<?>... targets) {
+        final RocketState<E> snapshot = state;
+        launch(snapshot, snapshot.closure(phase, targets));
+    }
+
+    @Override
+    public PhaseGraph graph(E phase) {
+        return state.plan(phase);
+    }
+
+    @Override
+    @SafeVarargs
+    public final void prepare(E... phases) {
+        final RocketState<E> snapshot = state;
+        for (final E phase : phases.length == 0 ? snapshot.phases() : phases) {
+            snapshot.plan(phase);
+        }
+    }
+
+    @Override
+    @SafeVarargs
+    public final void launchSequence(E... phases) {
+        final RocketState<E> snapshot = state;
+        if ((executor == null && workers == null) || phases.length == 1) {
+            // Without an executor, the combined graph would be launched in
+            // the same order as the phases one by one anyway.
+            for (final E phase : phases) launch(snapshot, snapshot.plan(phase));
+        } else if (phases.length > 1) {
+            final List<E> sequence = new ArrayList<>(phases.length);
+            for (final E phase : phases) sequence.add(phase);
+            launch(snapshot, snapshot.sequence(sequence));
+        }
+    }
+
+    @Override
+    public void launchThrough(E last) {
+        launchSequence(Arrays.copyOf(state.phases(), last.ordinal() + 1));
+    }
+
+    @Override
+    public CompletionStage<Void> launchAsync(E phase) {
+        final RocketState<E> snapshot = state;
+        return coordinator.launchAsync(snapshot, snapshot.plan(phase), plan ->
+            AsyncLaunch.launch(plan, executor, blocking, listener));
+    }
+
+    @Override
+    public TickLoop loop(E phase, double rate) {
+        return new TickLoopImpl<>(this, phase, rate);
+    }
+
+    @Override
+    public synchronized void add(Object instance) {
+        state = state.with(instance);
+    }
+
+    @Override
+    public synchronized boolean remove(Object instance) {
+        final RocketState<E> previous = state;
+        state = previous.without(instance);
+        return state != previous;
+    }
+
+    /**
+     * Launches the specified plan once the coordinator has admitted it. If
+     * the same plan is already being launched by another thread, this only
+     * waits for that launch to finish. A nested launch is always invoked
+     * sequentially on the calling thread.
+     *
+     * @param snapshot  the state that the plan belongs to
+     * @param plan      the plan to launch
+     */
+    private void launch(RocketState<E> snapshot, PhasePlan plan) {
+        final LaunchCoordinator.Admission admission =
+            coordinator.acquire(snapshot, plan);
+
+        if (admission == LaunchCoordinator.Admission.JOINED) {
+            return;
+        } else if (admission == LaunchCoordinator.Admission.NESTED) {
+            // The calling thread may be one that the outer launch is waiting
+            // for, so the nested plan is invoked on it, in order.
+            launchSequential(plan);
+            return;
+        }
+
+        final PhasePlan previous = LaunchCoordinator.enter(plan);
+        Throwable failure = null;
+        try {
+            launch(plan);
+        } catch (final RuntimeException | Error ex) {
+            failure = ex;
+            throw ex;
+        } finally {
+            LaunchCoordinator.exit(previous);
+            coordinator.release(plan, failure);
+        }
+    }
+
+    private void launch(PhasePlan plan) {
+        if (workers != null) {
+            new AffinityLaunch(plan, workers, blocking, listener).run();
+        } else if (executor != null) {
+            new ParallelLaunch(plan, executor, blocking, listener).run();
+        } else {
+            launchSequential(plan);
+        }
+    }
+
+    private void launchSequential(PhasePlan plan) {
+        if (listener != null) {
+            launchObserved(plan);
+        } else {
+            for (int i = 0; i < plan.size(); i++) {
+                plan.action(i).run();
+            }
+        }
+    }
+
+    /**
+     * Invokes every action in the plan sequentially while notifying the
+     * listener.
+     *
+     * @param plan  the plan to launch
+     */
+    private void launchObserved(PhasePlan plan) {
+        final long phaseStart = System.nanoTime();
+        listener.beforePhase(plan);
+
+        try {
+            for (int i = 0; i < plan.size(); i++) {
+                listener.beforeAction(plan, i);
+                final long start = System.nanoTime();
+
+                try {
+                    plan.action(i).run();
+                } catch (final RuntimeException ex) {
+                    listener.actionFailed(plan, i, System.nanoTime() - start, ex);
+                    throw ex;
+                }
+
+                listener.afterAction(plan, i, System.nanoTime() - start);
+            }
+        } catch (final RuntimeException ex) {
+            listener.phaseFailed(plan, System.nanoTime() - phaseStart, ex);
+            throw ex;
+        }
+
+        listener.afterPhase(plan, System.nanoTime() - phaseStart);
     }
 }
\ No newline at end of file
@@ -0,0 +1,770 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.RocketException;
+import com.github.pyknic.rocket.RocketListener;
+import com.github.pyknic.rocket.internal.ClassMetadata.ExecuteMethod;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.Collections.synchronizedMap;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Immutable snapshot of the installed instances of a {@link RocketImpl} and
+ * the compiled plans of every phase. Adding or removing an instance creates
+ * a new snapshot that shares everything that was not affected by the change
+ * with the previous one.
+ * <p>
+ * If the state is lazy, a phase is only validated when the state is
+ * created, and the plan for it is compiled the first time it is requested.
+ * Compiled plans are kept for the lifetime of the state.
+ *
+ * @param <E>  the phase category enum
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class RocketState<E extends Enum<E>> {
+
+    private final E[] phases;
+    private final List<Object> instances;
+    private final List<List<ActionMaker>> makers;
+    private final AtomicReferenceArray<CompiledPhase> compiled;
+    private final ConcurrentMap<List<E>, PhasePlan> sequences;
+    private final AtomicReferenceArray<AtomicReferenceArray<PhasePlan>> singles;
+    private final List<Map<BitSet, PhasePlan>> closures; // Guarded by each map
+    private final ConcurrentMap<Class<?>, BitSet> byClass;
+    private final Map<PhasePlan, BitSet> footprints; // Weak, synchronized
+    private final RocketListener listener; // Nullable
+    private final boolean bulk;
+    private volatile TypeIndex types; // Created on first use if restored
+    private volatile Map<Object, Integer> numbers; // Created on first use
+
+    private RocketState(E[] phases,
+                        List<Object> instances,
+                        TypeIndex types,
+                        List<List<ActionMaker>> makers,
+                        CompiledPhase[] compiled,
+                        RocketListener listener,
+                        boolean bulk) {
+
+        this.phases     = requireNonNull(phases);
+        this.instances  = unmodifiableList(instances);
+        this.types      = types;
+        this.makers     = unmodifiableList(makers);
+        this.compiled   = new AtomicReferenceArray<>(compiled);
+        this.sequences  = new ConcurrentHashMap<>();
+        this.singles    = new AtomicReferenceArray<>(phases.length);
+        this.closures   = Stream.of(phases)
+            .map(p -> new ClosureCache())
+            .collect(toList());
+        this.byClass    = new ConcurrentHashMap<>();
+        this.footprints = synchronizedMap(new WeakHashMap<>());
+        this.listener   = listener;
+        this.bulk       = bulk;
+    }
+
+    /**
+     * Resolves the dependencies between the annotated methods of the
+     * specified instances. If the state is not lazy, the plan of every phase
+     * is also compiled.
+     * <p>
+     * If the state is created in parallel, the classes of the instances are
+     * scanned and the phases compiled concurrently in the common fork-join
+     * pool. The result is exactly the same as when created sequentially, and
+     * so is the exception thrown if several phases are impossible.
+     * <p>
+     * If the state is in bulk mode, the instances of each class are grouped
+     * so that every annotated method becomes a single {@link BulkInvoker}
+     * for the whole group. The group is placed where the first instance of
+     * the class would have been.
+     *
+     * @param <E>        the phase category enum
+     * @param phases     every phase, in ordinal order
+     * @param instances  the instances, in the order they were installed
+     * @param lazy       if phases should only be compiled when requested
+     * @param parallel   if the state should be created in parallel
+     * @param bulk       if instances of the same class should be grouped
+     * @param listener   listener to notify when a phase is compiled, or
+     *                   {@code null}
+     * @return           the new state
+     *
+     * @throws RocketException  if some phase is not possible to launch
+     */
+    static <E extends Enum<E>> RocketState<E> create(E[] phases,
+                                                     List<Object> instances,
+                                                     boolean lazy,
+                                                     boolean parallel,
+                                                     boolean bulk,
+                                                     RocketListener listener) {
+
+        final List<Object> copy = new ArrayList<>(instances);
+        if (parallel) scan(copy);
+
+        final TypeIndex types = parallel
+            ? TypeIndex.parallel(copy) : new TypeIndex(copy);
+        final List<List<ActionMaker>> makers = new ArrayList<>(phases.length);
+        final CompiledPhase[] compiled = new CompiledPhase[phases.length];
+
+        for (final E phase : phases) {
+            final List<ActionMaker> list = makers(phase, copy, types, bulk);
+            makers.add(list);
+            if (!parallel) {
+                compiled[phase.ordinal()] = compile(phase, list, lazy, listener);
+            }
+        }
+
+        if (parallel) {
+            compileAll(phases, makers, compiled, lazy, listener);
+        }
+
+        return new RocketState<>(phases, copy, types, makers, compiled,
+            listener, bulk);
+    }
+
+    /**
+     * Recreates a state from phases that have already been compiled, for an
+     * example from a cache. The type index is not created unless it is
+     * needed. Since every phase is already compiled, the state has no
+     * listener to notify.
+     *
+     * @param <E>        the phase category enum
+     * @param phases     every phase, in ordinal order
+     * @param instances  the instances, in the order they were installed
+     * @param compiled   the compiled phases, in ordinal order
+     * @return           the state
+     */
+    static <E extends Enum<E>> RocketState<E> restore(E[] phases,
+                                                      List<Object> instances,
+                                                      CompiledPhase[] compiled) {
+
+        return new RocketState<>(phases, new ArrayList<>(instances), null,
+            Stream.of(compiled).map(CompiledPhase::makers).collect(toList()),
+            compiled, null, false);
+    }
+
+    E[] phases() {
+        return phases;
+    }
+
+    List<Object> instances() {
+        return instances;
+    }
+
+    TypeIndex types() {
+        TypeIndex result = types;
+        if (result == null) {
+            synchronized (this) {
+                result = types;
+                if (result == null) {
+                    types = result = new TypeIndex(instances);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the specified phase, compiling it first if it has not been
+     * compiled yet.
+     *
+     * @param phase  the phase
+     * @return       the compiled phase
+     */
+    CompiledPhase compiled(E phase) {
+        final CompiledPhase result = compiled.get(phase.ordinal());
+        return result == null ? compile(phase.ordinal()) : result;
+    }
+
+    /**
+     * Returns the plan of the specified phase, compiling it first if it has
+     * not been compiled yet.
+     *
+     * @param phase  the phase
+     * @return       the plan
+     */
+    PhasePlan plan(E phase) {
+        return compiled(phase).plan();
+    }
+
+    /**
+     * Returns every action maker in every phase, in phase order and then in
+     * the order they were created.
+     *
+     * @return  stream of makers
+     */
+    Stream<ActionMaker> makers() {
+        return makers.stream().flatMap(List::stream);
+    }
+
+    /**
+     * Returns the combined plan for launching the specified phases in
+     * sequence, creating it the first time it is requested.
+     *
+     * @param sequence  the phases, in the order they should be launched
+     * @return          the combined plan
+     *
+     * @see PhasePlan#sequence(PhasePlan...)
+     */
+    PhasePlan sequence(List<E> sequence) {
+        return sequences.computeIfAbsent(sequence, list ->
+            PhasePlan.sequence(list.stream()
+                .map(this::plan)
+                .toArray(PhasePlan[]::new))
+        );
+    }
+
+    /**
+     * Returns the plan for launching only the actions on the specified
+     * instances in the specified phase, and every action that they depend
+     * on. The plan is created the first time it is requested. The targets are
+     * identified by the position where they were installed, so the order
+     * they are given in does not matter, and nothing is allocated when a
+     * single target is launched again.
+     *
+     * @param phase    the phase
+     * @param targets  the instances to launch, compared by identity
+     * @return         the plan for the closure of the targets
+     *
+     * @throws RocketException  if some target is not installed
+     */
+    PhasePlan closure(E phase, Object... targets) {
+        if (targets.length == 1) return closure(phase, position(targets[0]));
+
+        final BitSet positions = new BitSet(instances.size());
+        for (final Object target : targets) positions.set(position(target));
+        return closure(phase, positions);
+    }
+
+    /**
+     * Returns the plan for launching only the actions on instances of the
+     * specified classes in the specified phase, and every action that they
+     * depend on. The plan is created the first time it is requested.
+     *
+     * @param phase    the phase
+     * @param targets  the classes of the instances to launch
+     * @return         the plan for the closure of the targets
+     *
+     * @throws RocketException  if no instance of some class is installed
+     */
+    PhasePlan closure(E phase, Class<?>... targets) {
+        if (targets.length == 1) return closure(phase, positions(targets[0]));
+
+        final BitSet positions = new BitSet(instances.size());
+        for (final Class<?> target : targets) positions.or(positions(target));
+        return closure(phase, positions);
+    }
+
+    private PhasePlan closure(E phase, int position) {
+        AtomicReferenceArray<PhasePlan> plans = singles.get(phase.ordinal());
+        if (plans == null) {
+            singles.compareAndSet(phase.ordinal(), null,
+                new AtomicReferenceArray<>(instances.size()));
+            plans = singles.get(phase.ordinal());
+        }
+
+        PhasePlan result = plans.get(position);
+        if (result == null) {
+            final BitSet positions = new BitSet(instances.size());
+            positions.set(position);
+            plans.compareAndSet(position, null, closure(plan(phase), positions));
+            result = plans.get(position);
+        }
+        return result;
+    }
+
+    private PhasePlan closure(E phase, BitSet positions) {
+        final Map<BitSet, PhasePlan> cache = closures.get(phase.ordinal());
+        synchronized (cache) {
+            final PhasePlan cached = cache.get(positions);
+            if (cached != null) return cached;
+        }
+
+        final PhasePlan computed = closure(plan(phase), positions);
+        synchronized (cache) {
+            final PhasePlan cached = cache.putIfAbsent(positions, computed);
+            return cached == null ? computed : cached;
+        }
+    }
+
+    /**
+     * Computes the plan for launching only the actions in the specified plan
+     * that are invoked on the instances at the specified positions, and every
+     * action that they depend on.
+     *
+     * @param plan       the plan of the whole phase
+     * @param positions  the positions of the targets
+     * @return           the plan for the closure of the targets
+     */
+    private PhasePlan closure(PhasePlan plan, BitSet positions) {
+        final Map<Object, Integer> numbers = numbers();
+        final BitSet selected = new BitSet(plan.size());
+
+        for (int i = 0; i < plan.size(); i++) {
+            for (final Object instance : plan.action(i).instances()) {
+                if (positions.get(numbers.get(instance))) {
+                    selected.set(i);
+                    break;
+                }
+            }
+        }
+
+        return plan.closure(selected);
+    }
+
+    /**
+     * Returns the position where the specified instance was first installed.
+     *
+     * @param target  the instance
+     * @return        its position
+     *
+     * @throws RocketException  if the instance is not installed
+     */
+    private int position(Object target) {
+        final Integer position = numbers().get(requireNonNull(target));
+        if (position == null) {
+            throw new RocketException(
+                "Can not launch " + target + " since it is not installed.");
+        }
+        return position;
+    }
+
+    /**
+     * Returns the positions of every installed instance of the specified
+     * class. The returned set must not be modified.
+     *
+     * @param target  the class
+     * @return        the positions of its instances
+     *
+     * @throws RocketException  if no instance of the class is installed
+     */
+    private BitSet positions(Class<?> target) {
+        final BitSet cached = byClass.get(requireNonNull(target));
+        if (cached != null) return cached;
+
+        final Map<Object, Integer> numbers = numbers();
+        final BitSet result = new BitSet(instances.size());
+        for (int i = 0; i < instances.size(); i++) {
+            final Object instance = instances.get(i);
+            if (target.isInstance(instance) && numbers.get(instance) == i) {
+                result.set(i);
+            }
+        }
+
+        if (result.isEmpty()) {
+            throw new RocketException(
+                "Can not launch instances of " + target.getName() +
+                " since none is installed.");
+        }
+
+        final BitSet previous = byClass.putIfAbsent(target, result);
+        return previous == null ? result : previous;
+    }
+
+    /**
+     * Returns the instances that the specified plan invokes methods on, as
+     * the set of the positions where they were first installed. Two plans of
+     * this state have an instance in common if their footprints intersect.
+     * The footprint is computed the first time it is requested and must not
+     * be modified.
+     * <p>
+     * Closures of several targets are evicted from their cache when they
+     * have not been used for a while, so the footprints are only weakly
+     * referenced by the plan. The footprint can not be stored in the plan
+     * itself, since the plan of a phase is shared with other states where
+     * the instances may be installed at different positions.
+     *
+     * @param plan  a plan of this state
+     * @return      the footprint of the plan
+     */
+    BitSet footprint(PhasePlan plan) {
+        return footprints.computeIfAbsent(plan, p -> {
+            final Map<Object, Integer> positions = numbers();
+            final BitSet result = new BitSet(instances.size());
+            for (int i = 0; i < p.size(); i++) {
+                for (final Object instance : p.action(i).instances()) {
+                    result.set(positions.get(instance));
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Returns a new state where the specified instance has been installed
+     * after every existing one. Only the phases where the instance has
+     * annotated methods are compiled again, and only from the point where
+     * the new actions could first be invoked. Phases that have not been
+     * compiled yet are only validated.
+     *
+     * @param instance  the instance to add
+     * @return          the new state
+     *
+     * @throws RocketException  if some phase is not possible to launch
+     */
+    RocketState<E> with(Object instance) {
+        requireNonNull(instance);
+
+        final TypeIndex newTypes = contains(instance)
+            ? types() : types().with(instance);
+
+        final List<Object> newInstances = new ArrayList<>(instances);
+        newInstances.add(instance);
+        if (bulk) return regroup(newInstances, newTypes);
+
+        final List<List<ActionMaker>> newMakers = new ArrayList<>(phases.length);
+        final CompiledPhase[] newCompiled = new CompiledPhase[phases.length];
+
+        for (final E phase : phases) {
+            final int ordinal = phase.ordinal();
+            final List<ActionMaker> added = methods(instance, phase).stream()
+                .map(em -> new ActionMaker(instance, em, newTypes))
+                .collect(toList());
+
+            final CompiledPhase previous = compiled.get(ordinal);
+            if (previous != null) {
+                newCompiled[ordinal] = previous.with(added);
+                newMakers.add(newCompiled[ordinal].makers());
+            } else {
+                // Makers that have not been compiled are never shared between
+                // states, since they resolve their arguments when compiled.
+                final List<ActionMaker> list = makers.get(ordinal).stream()
+                    .map(am -> am.rebind(newTypes))
+                    .collect(toList());
+
+                list.addAll(added);
+                if (!added.isEmpty()) CompiledPhase.validate(phase.name(), list);
+                newMakers.add(list);
+            }
+        }
+
+        return new RocketState<>(phases, newInstances, newTypes,
+            newMakers, newCompiled, listener, false);
+    }
+
+    /**
+     * Returns a new state where every occurrence of the specified instance
+     * has been uninstalled. Actions that had the instance as an argument are
+     * bound to the next installed instance of the same type instead.
+     *
+     * @param instance  the instance to remove
+     * @return          the new state, or this state if the instance was not
+     *                  installed
+     *
+     * @throws RocketException  if some phase is not possible to launch
+     */
+    RocketState<E> without(Object instance) {
+        if (!contains(instance)) return this;
+
+        final List<Object> remaining = instances.stream()
+            .filter(other -> other != instance)
+            .collect(toList());
+
+        final TypeIndex newTypes = types().without(instance, remaining);
+        if (bulk) return regroup(remaining, newTypes);
+
+        final List<List<ActionMaker>> newMakers = new ArrayList<>(phases.length);
+        final CompiledPhase[] newCompiled = new CompiledPhase[phases.length];
+
+        for (final E phase : phases) {
+            final int ordinal = phase.ordinal();
+            final CompiledPhase previous = compiled.get(ordinal);
+            if (previous != null) {
+                newCompiled[ordinal] = previous.without(instance, am ->
+                    am.isBoundTo(instance) ? am.rebind(newTypes) : am
+                );
+                newMakers.add(newCompiled[ordinal].makers());
+            } else {
+                final List<ActionMaker> list = makers.get(ordinal).stream()
+                    .filter(am -> am.instance() != instance)
+                    .map(am -> am.rebind(newTypes))
+                    .collect(toList());
+
+                if (list.size() < makers.get(ordinal).size()) {
+                    CompiledPhase.validate(phase.name(), list);
+                }
+                newMakers.add(list);
+            }
+        }
+
+        return new RocketState<>(phases, remaining, newTypes,
+            newMakers, newCompiled, listener, false);
+    }
+
+    /**
+     * Returns a new state in bulk mode with the specified instances, where
+     * the groups of every phase are formed again. Since adding or removing a
+     * single instance changes the group of its class, and removing the first
+     * instance of a class can move the group, phases are not updated
+     * incrementally. Phases that have been compiled in this state
+     * are compiled again and the rest are only validated.
+     *
+     * @param newInstances  the instances of the new state
+     * @param newTypes      the type index of the new state
+     * @return              the new state
+     *
+     * @throws RocketException  if some phase is not possible to launch
+     */
+    private RocketState<E> regroup(List<Object> newInstances,
+                                   TypeIndex newTypes) {
+
+        final List<List<ActionMaker>> newMakers = new ArrayList<>(phases.length);
+        final CompiledPhase[] newCompiled = new CompiledPhase[phases.length];
+
+        for (final E phase : phases) {
+            final List<ActionMaker> list =
+                makers(phase, newInstances, newTypes, true);
+
+            if (compiled.get(phase.ordinal()) == null) {
+                CompiledPhase.validate(phase.name(), list);
+            } else {
+                newCompiled[phase.ordinal()] =
+                    CompiledPhase.compile(phase.name(), list);
+            }
+            newMakers.add(list);
+        }
+
+        return new RocketState<>(phases, newInstances, newTypes,
+            newMakers, newCompiled, listener, true);
+    }
+
+    /**
+     * Compiles the plan of the phase with the specified ordinal. No lock is
+     * held while compiling, so a listener that blocks or calls back into
+     * the rocket does not stall other phases. If several threads compile
+     * the same phase at the same time, the result of the first one to
+     * finish is kept and returned to all of them.
+     *
+     * @param ordinal  the phase ordinal
+     * @return         the compiled phase
+     */
+    private CompiledPhase compile(int ordinal) {
+        final CompiledPhase result = compile(phases[ordinal],
+            makers.get(ordinal), false, listener);
+
+        return compiled.compareAndSet(ordinal, null, result)
+            ? result : compiled.get(ordinal);
+    }
+
+    private Map<Object, Integer> numbers() {
+        Map<Object, Integer> result = numbers;
+        if (result == null) {
+            synchronized (this) {
+                result = numbers;
+                if (result == null) {
+                    result = new IdentityHashMap<>();
+                    for (int i = 0; i < instances.size(); i++) {
+                        result.putIfAbsent(instances.get(i), i);
+                    }
+                    numbers = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean contains(Object instance) {
+        for (final Object other : instances) {
+            if (other == instance) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Computes the {@link ClassMetadata} of every distinct class of the
+     * specified instances in parallel. The metadata is cached, so the
+     * sequential part of the build only has to look it up.
+     *
+     * @param instances  the instances
+     */
+    private static void scan(List<Object> instances) {
+        instances.stream()
+            .map(Object::getClass)
+            .distinct()
+            .collect(toList())
+            .parallelStream()
+            .forEach(c -> {
+                try {
+                    ClassMetadata.of(c);
+                } catch (final RocketException ex) {
+                    // Thrown again when the instance is reached in order.
+                }
+            });
+    }
+
+    /**
+     * Compiles or validates every phase in parallel. The actions are bound
+     * to their arguments first, since that is where most of the time is
+     * spent. If more than one phase fails, the failure of the first one is
+     * thrown, just like a sequential build would.
+     *
+     * @param <E>       the phase category enum
+     * @param phases    every phase, in ordinal order
+     * @param makers    the makers of every phase, in ordinal order
+     * @param compiled  array to store the compiled phases in
+     * @param lazy      if the phases should only be validated
+     * @param listener  listener to notify when a phase is compiled, or
+     *                  {@code null}
+     *
+     * @throws RocketException  if some phase is not possible to launch
+     */
+    private static <E extends Enum<E>> void compileAll(E[] phases,
+                                                       List<List<ActionMaker>> makers,
+                                                       CompiledPhase[] compiled,
+                                                       boolean lazy,
+                                                       RocketListener listener) {
+        if (!lazy) {
+            makers.stream()
+                .flatMap(List::stream)
+                .collect(toList())
+                .parallelStream()
+                .forEach(am -> {
+                    try {
+                        am.action();
+                    } catch (final RocketException ex) {
+                        // Thrown again if the phase is compiled.
+                    }
+                });
+        }
+
+        final RuntimeException[] failures = new RuntimeException[phases.length];
+        IntStream.range(0, phases.length).parallel().forEach(i -> {
+            try {
+                compiled[i] = compile(phases[i], makers.get(i), lazy, listener);
+            } catch (final RuntimeException ex) {
+                failures[i] = ex;
+            }
+        });
+
+        for (final RuntimeException failure : failures) {
+            if (failure != null) throw failure;
+        }
+    }
+
+    private static CompiledPhase compile(Enum<?> phase,
+                                         List<ActionMaker> makers,
+                                         boolean lazy,
+                                         RocketListener listener) {
+        if (lazy) {
+            CompiledPhase.validate(phase.name(), makers);
+            return null;
+        } else if (listener == null) {
+            return CompiledPhase.compile(phase.name(), makers);
+        }
+
+        listener.beforeCompile(phase.name());
+        final long start = System.nanoTime();
+        final CompiledPhase result;
+
+        try {
+            result = CompiledPhase.compile(phase.name(), makers);
+        } catch (final RuntimeException ex) {
+            listener.compileFailed(phase.name(), System.nanoTime() - start, ex);
+            throw ex;
+        }
+
+        listener.afterCompile(result.plan(), System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Creates a maker for every annotated method in the specified phase on
+     * every one of the specified instances, in the order they were
+     * installed. In bulk mode, the instances of each class are grouped and
+     * one maker is created per method and group instead, in the order the
+     * first instance of each class was installed. Classes with only one
+     * instance get regular makers.
+     *
+     * @param phase      the phase
+     * @param instances  the instances, in the order they were installed
+     * @param types      the type index to resolve arguments with
+     * @param bulk       if instances of the same class should be grouped
+     * @return           the makers
+     */
+    private static List<ActionMaker> makers(Enum<?> phase,
+                                            List<Object> instances,
+                                            TypeIndex types,
+                                            boolean bulk) {
+
+        final List<ActionMaker> list = new ArrayList<>();
+        if (bulk) {
+            final Map<Class<?>, List<Object>> groups = new LinkedHashMap<>();
+            for (final Object instance : instances) {
+                groups.computeIfAbsent(instance.getClass(),
+                    c -> new ArrayList<>()).add(instance);
+            }
+
+            groups.forEach((clazz, group) -> {
+                final Object[] members = group.toArray();
+                for (final ExecuteMethod em : methods(members[0], phase)) {
+                    list.add(members.length == 1
+                        ? new ActionMaker(members[0], em, types)
+                        : ActionMaker.group(members, em, types));
+                }
+            });
+        } else {
+            for (final Object instance : instances) {
+                for (final ExecuteMethod em : methods(instance, phase)) {
+                    list.add(new ActionMaker(instance, em, types));
+                }
+            }
+        }
+
+        return list;
+    }
+
+    private static List<ExecuteMethod> methods(Object instance, Enum<?> phase) {
+        return ClassMetadata.of(instance.getClass()).methods(phase.name());
+    }
+
+    /**
+     * The closures of sets of several targets in a single phase, keyed by
+     * the positions of the targets. Only the most recently used closures are
+     * kept, so launching many different combinations of targets does not
+     * grow the cache without bound.
+     */
+    private static final class ClosureCache
+    extends LinkedHashMap<BitSet, PhasePlan> {
+
+        private static final long serialVersionUID = 1L;
+        private static final int CAPACITY = 256;
+
+        ClosureCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BitSet, PhasePlan> eldest) {
+            return size() > CAPACITY;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import com.github.pyknic.rocket.LatencyHistogram;
+import com.github.pyknic.rocket.Rocket;
+import com.github.pyknic.rocket.TickLoop;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Default implementation of the {@link TickLoop} interface. Nothing is
+ * allocated between two ticks, so if launching the phase doesn't allocate
+ * either, the loop produces no garbage.
+ *
+ * @param <E>  the phase category enum
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class TickLoopImpl<E extends Enum<E>> implements TickLoop {
+
+    private final Rocket<E> rocket;
+    private final E phase;
+    private final long period;
+    private final AtomicReference<Thread> runner;
+    private final AtomicLong ticks;
+    private final AtomicLong overruns;
+    private final AtomicLong skipped;
+    private final LatencyHistogram tickTimes;
+    private volatile boolean stopped;
+
+    TickLoopImpl(Rocket<E> rocket, E phase, double rate) {
+        if (!(rate > 0) || Double.isInfinite(rate)) {
+            throw new IllegalArgumentException(
+                "Expected a positive tick rate, but got " + rate + ".");
+        }
+
+        this.rocket    = requireNonNull(rocket);
+        this.phase     = requireNonNull(phase);
+        this.period    = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / rate));
+        this.runner    = new AtomicReference<>();
+        this.ticks     = new AtomicLong();
+        this.overruns  = new AtomicLong();
+        this.skipped   = new AtomicLong();
+        this.tickTimes = new LatencyHistogram();
+    }
+
+    @Override
+    public void run() {
+        final Thread thread = Thread.currentThread();
+        if (!runner.compareAndSet(null, thread)) {
+            throw new IllegalStateException(
+                "The loop for the " + phase + " phase is already running.");
+        }
+
+        try {
+            long due = System.nanoTime();
+            while (!stopped && !thread.isInterrupted()) {
+                final long start = System.nanoTime();
+                rocket.launch(phase);
+                final long end = System.nanoTime();
+
+                ticks.incrementAndGet();
+                tickTimes.record(end - start);
+
+                // If the next tick is already due, start it immediately but
+                // skip any ticks that were due before it.
+                due += period;
+                if (end > due) {
+                    overruns.incrementAndGet();
+                    final long behind = (end - due) / period;
+                    if (behind > 0) {
+                        skipped.addAndGet(behind);
+                        due += behind * period;
+                    }
+                }
+
+                long remaining;
+                while (!stopped && !thread.isInterrupted()
+                &&    (remaining = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+        } finally {
+            stopped = true;
+            runner.set(null);
+        }
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+        final Thread thread = runner.get();
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return runner.get() != null;
+    }
+
+    @Override
+    public long period(TimeUnit unit) {
+        return unit.convert(period, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public long ticks() {
+        return ticks.get();
+    }
+
+    @Override
+    public long overruns() {
+        return overruns.get();
+    }
+
+    @Override
+    public long skipped() {
+        return skipped.get();
+    }
+
+    @Override
+    public LatencyHistogram tickTimes() {
+        return tickTimes;
+    }
+
+    @Override
+    public String toString() {
+        return "TickLoop{phase=" + phase +
+            ", period=" + period + "ns" +
+            ", ticks=" + ticks() +
+            ", overruns=" + overruns() +
+            ", skipped=" + skipped() +
+            ", tickTimes=" + tickTimes + "}";
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interns classes as small integer ids and memoizes the ancestors of every
+ * class, so that resolving dependencies is a matter of indexing arrays and
+ * testing bits instead of traversing the type hierarchy and hashing classes
+ * over and over. The ancestors of a class are computed once from the
+ * memoized ancestors of its direct supertypes.
+ * <p>
+ * Ids are shared by every builder in the JVM and are never reused, so they
+ * are neither dense nor bounded by the number of classes in a single phase.
+ * Anything indexed by type should therefore number the types it contains
+ * locally instead of using the ids as array indices. The memoized values are
+ * kept in a {@link ClassValue}, so they do not prevent a class from being
+ * unloaded.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class TypeIds {
+
+    private static final AtomicInteger NEXT = new AtomicInteger();
+
+    private static final ClassValue<Type> TYPES = new ClassValue<Type>() {
+        @Override
+        protected Type computeValue(Class<?> clazz) {
+            return new Type(clazz);
+        }
+    };
+
+    /**
+     * Returns the id of the specified class.
+     *
+     * @param clazz  the class
+     * @return       its id
+     */
+    static int id(Class<?> clazz) {
+        return TYPES.get(clazz).id;
+    }
+
+    /**
+     * Returns the specified class followed by all its ancestors, in the same
+     * order as {@code ReflectionUtil.traverseAncestors}. The returned array
+     * must not be modified.
+     *
+     * @param clazz  the class
+     * @return       the class and its ancestors
+     */
+    static Class<?>[] ancestors(Class<?> clazz) {
+        return TYPES.get(clazz).ancestors;
+    }
+
+    /**
+     * Returns the ids of the specified class and all its ancestors, in the
+     * same order as {@link #ancestors(Class)}. The returned array must not be
+     * modified.
+     *
+     * @param clazz  the class
+     * @return       ids of the class and its ancestors
+     */
+    static int[] ancestorIds(Class<?> clazz) {
+        return TYPES.get(clazz).ancestorIds;
+    }
+
+    /**
+     * Returns {@code true} if the class with the specified id is the
+     * specified class or one of its ancestors.
+     *
+     * @param clazz     the class
+     * @param ancestor  the id of the potential ancestor
+     * @return          if the class is assignable to the ancestor
+     */
+    static boolean isAssignable(Class<?> clazz, int ancestor) {
+        return Arrays.binarySearch(TYPES.get(clazz).sorted, ancestor) >= 0;
+    }
+
+    private static final class Type {
+
+        private final int id;
+        private final Class<?>[] ancestors;
+        private final int[] ancestorIds;
+        private final int[] sorted;
+
+        Type(Class<?> clazz) {
+            final Set<Class<?>> closure = new LinkedHashSet<>();
+            closure.add(clazz);
+
+            final Class<?> parent = clazz.getSuperclass();
+            if (parent != null) {
+                Collections.addAll(closure, TYPES.get(parent).ancestors);
+            }
+
+            for (final Class<?> iface : clazz.getInterfaces()) {
+                Collections.addAll(closure, TYPES.get(iface).ancestors);
+            }
+
+            // If several threads compute the same class at once, only one of
+            // the ids is kept, so there may be gaps between the ids.
+            this.id          = NEXT.getAndIncrement();
+            this.ancestors   = closure.toArray(new Class<?>[0]);
+            this.ancestorIds = new int[ancestors.length];
+
+            ancestorIds[0] = id;
+            for (int i = 1; i < ancestors.length; i++) {
+                ancestorIds[i] = TYPES.get(ancestors[i]).id;
+            }
+
+            this.sorted = ancestorIds.clone();
+            Arrays.sort(sorted);
+        }
+    }
+
+    private TypeIds() {}
+}
@@ -0,0 +1,161 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket.internal;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Collections.newSetFromMap;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Index from every ancestor type of a list of instances to the first instance
+ * of that type, making it possible to resolve an argument with a single
+ * lookup. The index is immutable, so adding or removing an instance creates
+ * a new index.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+final class TypeIndex {
+
+    private final Map<Class<?>, Object> first;
+    private final Map<Class<?>, Integer> counts;
+
+    /**
+     * Indexes the specified instances. If several instances share a type, the
+     * one that comes first in the list is the one that is returned by
+     * {@link #get(Class)}.
+     *
+     * @param instances  the instances to index
+     */
+    TypeIndex(List<Object> instances) {
+        this.first  = new HashMap<>();
+        this.counts = new HashMap<>();
+
+        final Set<Object> indexed = newSetFromMap(new IdentityHashMap<>());
+        for (final Object instance : instances) {
+            if (!indexed.add(instance)) continue;
+            for (final Class<?> c : TypeIds.ancestors(instance.getClass())) {
+                first.putIfAbsent(c, instance);
+                counts.merge(c, 1, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Indexes the specified instances like {@link #TypeIndex(List)}, but
+     * interns the ancestors of every distinct class in parallel first. The
+     * ancestors are then added in the order of the list, so the resulting
+     * index is the same.
+     *
+     * @param instances  the instances to index
+     * @return           the index
+     */
+    static TypeIndex parallel(List<Object> instances) {
+        instances.stream()
+            .map(Object::getClass)
+            .distinct()
+            .collect(toList())
+            .parallelStream()
+            .forEach(TypeIds::ancestors);
+
+        return new TypeIndex(instances);
+    }
+
+    private TypeIndex(Map<Class<?>, Object> first,
+                      Map<Class<?>, Integer> counts) {
+        this.first  = first;
+        this.counts = counts;
+    }
+
+    /**
+     * Returns a new index where the specified instance has been added after
+     * every indexed instance. The caller must make sure that the instance is
+     * not already indexed.
+     *
+     * @param instance  the instance to add
+     * @return          the new index
+     */
+    TypeIndex with(Object instance) {
+        final TypeIndex result = new TypeIndex(
+            new HashMap<>(first), new HashMap<>(counts));
+
+        for (final Class<?> c : TypeIds.ancestors(instance.getClass())) {
+            result.first.putIfAbsent(c, instance);
+            result.counts.merge(c, 1, Integer::sum);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a new index where the specified instance has been removed. Any
+     * type that resolved to the removed instance is resolved to the first of
+     * the remaining instances of that type instead.
+     *
+     * @param instance   the instance to remove
+     * @param remaining  the instances that are left, in the order they were
+     *                   added
+     * @return           the new index
+     */
+    TypeIndex without(Object instance, List<Object> remaining) {
+        final TypeIndex result = new TypeIndex(
+            new HashMap<>(first), new HashMap<>(counts));
+
+        for (final Class<?> c : TypeIds.ancestors(instance.getClass())) {
+            result.counts.computeIfPresent(c, (k, v) -> v == 1 ? null : v - 1);
+            if (result.first.get(c) == instance) {
+                result.first.remove(c);
+                final int type = TypeIds.id(c);
+                for (final Object other : remaining) {
+                    if (TypeIds.isAssignable(other.getClass(), type)) {
+                        result.first.put(c, other);
+                        break;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the first instance of the specified type, or {@code null} if
+     * there is no such instance.
+     *
+     * @param type  the type to look for
+     * @return      the first instance or {@code null}
+     */
+    Object get(Class<?> type) {
+        return first.get(type);
+    }
+
+    /**
+     * Returns the number of distinct indexed instances that are of the
+     * specified type.
+     *
+     * @param type  the type to look for
+     * @return      number of matching instances
+     */
+    int count(Class<?> type) {
+        return counts.getOrDefault(type, 0);
+    }
+}
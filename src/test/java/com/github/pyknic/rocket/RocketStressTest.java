@@ -0,0 +1,724 @@
+/**
+ *
+ * Copyright (c) 2017, Emil Forslund. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); You may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.pyknic.rocket;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static com.github.pyknic.rocket.internal.util.ReflectionUtil.traverseMethods;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Builds and launches randomly generated component graphs and checks them
+ * against a simple model of how the dependencies should be resolved.
+ * <p>
+ * The component classes are generated as source code and compiled when the
+ * test starts. Each universe of classes has random inheritance, interfaces
+ * and parameter types, and some universes contain a cycle. Every scenario
+ * then installs a random number of instances of the classes in a random
+ * order. The generated methods report every invocation to {@code Probe}, so
+ * that the order of the invocations can be checked for every launch mode.
+ * <p>
+ * The scenarios are kept small enough to run in every build. The check that
+ * compares measured build times is tagged {@code timing} and is only run
+ * with the {@code timing} profile, since it depends on the load of the
+ * machine.
+ *
+ * @author Emil Forslund
+ * @since  1.1.0
+ */
+class RocketStressTest {
+
+    enum Phase {
+        INIT,
+        UPDATE,
+        DESTROY
+    }
+
+    enum Mode {
+        SEQUENTIAL,
+        EXECUTOR,
+        AFFINITY,
+        ASYNC,
+        BULK
+    }
+
+    private static final int ACYCLIC_UNIVERSES = 3;
+    private static final int CYCLIC_UNIVERSES  = 3;
+    private static final int MAX_INSTANCES     = 800;
+    private static final int LARGE_INSTANCES   = 20_000;
+
+    private static List<List<Class<?>>> universes;
+    private static ExecutorService executor;
+
+    private static final AtomicLong CLOCK = new AtomicLong();
+    private static final Queue<Call> CALLS = new ConcurrentLinkedQueue<>();
+
+    @BeforeAll
+    static void compile() throws Exception {
+        final Path dir = Files.createTempDirectory("rocket-stress");
+        final List<File> sources = new ArrayList<>();
+
+        write(dir, "stress/Probe.java", String.join("\n",
+            "package stress;",
+            "",
+            "public final class Probe {",
+            "    public static volatile java.util.function.Function<Object[], Runnable> SINK;",
+            "}"
+        ), sources);
+
+        final int total = ACYCLIC_UNIVERSES + CYCLIC_UNIVERSES;
+        final List<List<String>> names = new ArrayList<>();
+        for (int u = 0; u < total; u++) {
+            names.add(generate(dir, u, u >= ACYCLIC_UNIVERSES, sources));
+        }
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (final StandardJavaFileManager files =
+                 compiler.getStandardFileManager(null, null, null)) {
+
+            final JavaCompiler.CompilationTask task = compiler.getTask(
+                null, files, null,
+                asList("-classpath", location(Execute.class),
+                       "-d", dir.toString(), "-proc:none"),
+                null, files.getJavaFileObjectsFromFiles(sources)
+            );
+
+            assertTrue(task.call(), "Compilation failed.");
+        }
+
+        final ClassLoader loader = new URLClassLoader(
+            new URL[] {dir.toUri().toURL()},
+            RocketStressTest.class.getClassLoader()
+        );
+
+        final Function<Object[], Runnable> sink = args -> {
+            final Call call = new Call(args, CLOCK.incrementAndGet());
+            return () -> {
+                call.end = CLOCK.incrementAndGet();
+                CALLS.add(call);
+            };
+        };
+
+        loader.loadClass("stress.Probe").getField("SINK").set(null, sink);
+
+        universes = new ArrayList<>();
+        for (final List<String> universe : names) {
+            final List<Class<?>> classes = new ArrayList<>();
+            for (final String name : universe) {
+                classes.add(loader.loadClass(name));
+            }
+            universes.add(classes);
+        }
+
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterAll
+    static void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void acyclic() {
+        for (int seed = 0; seed < 24; seed++) {
+            final Random random = new Random(seed);
+            final List<Object> instances = instances(
+                universes.get(seed % ACYCLIC_UNIVERSES), random,
+                50 + random.nextInt(MAX_INSTANCES), 0.0);
+
+            final String context = "Acyclic scenario " + seed;
+            assertNull(firstStuck(instances), context);
+
+            final Rocket<Phase> rocket = builder(instances).build();
+            assertSameGraphs(context + " (lazy)", rocket,
+                builder(instances).lazy().build());
+            assertSameGraphs(context + " (parallel build)", rocket,
+                builder(instances).parallelBuild().build());
+
+            checkLaunches(context, instances, rocket);
+        }
+    }
+
+    @Test
+    void cyclic() {
+        int failed = 0;
+        for (int seed = 0; seed < 24; seed++) {
+            final Random random = new Random(1000 + seed);
+            final List<Object> instances = instances(
+                universes.get(ACYCLIC_UNIVERSES + seed % CYCLIC_UNIVERSES),
+                random, 50 + random.nextInt(MAX_INSTANCES), 0.1);
+
+            final String context = "Cyclic scenario " + seed;
+            final String expected = firstStuck(instances);
+
+            if (expected == null) {
+                checkLaunches(context, instances, builder(instances).build());
+                continue;
+            }
+
+            failed++;
+            for (final RocketBuilder<Phase> builder : asList(
+                    builder(instances),
+                    builder(instances).lazy(),
+                    builder(instances).parallelBuild())) {
+
+                final RocketException ex = assertThrows(
+                    RocketException.class, builder::build, context);
+                assertEquals(expected, ex.getMessage(), context);
+            }
+        }
+
+        assertTrue(failed >= 12, "Only " + failed + " scenarios had a cycle.");
+    }
+
+    @Test
+    void large() {
+        final List<Object> instances = instances(
+            universes.get(0), new Random(42), LARGE_INSTANCES, 0.0);
+
+        final Rocket<Phase> rocket = builder(instances).build();
+        assertTrue(Arrays.stream(Phase.values())
+            .mapToInt(p -> rocket.graph(p).actionCount())
+            .sum() >= LARGE_INSTANCES);
+
+        assertSameGraphs("Large scenario (parallel build)", rocket,
+            builder(instances).parallelBuild().build());
+
+        final Rocket<Phase> parallel = builder(instances).executor(executor).build();
+        for (final Phase phase : Phase.values()) {
+            final Map<Object, List<String>> reference = check("Large scenario",
+                instances, rocket, phase, Mode.SEQUENTIAL, null);
+            check("Large scenario", instances, parallel, phase,
+                Mode.EXECUTOR, reference);
+        }
+    }
+
+    @Test
+    @Tag("timing")
+    void buildScales() {
+        final List<Object> small = instances(
+            universes.get(1), new Random(7), 10_000, 0.0);
+        final List<Object> large = instances(
+            universes.get(1), new Random(7), 100_000, 0.0);
+
+        fastestBuild(small); // Warm up
+        final long smallNanos = fastestBuild(small);
+        final long largeNanos = fastestBuild(large);
+
+        // Ten times as many actions should take about ten times as long.
+        // Anything close to quadratic fails.
+        assertTrue(largeNanos < 30 * Math.max(smallNanos, 1_000_000), String.format(
+            "Building 100k actions took %d ms, but 10k actions only %d ms.",
+            largeNanos / 1_000_000, smallNanos / 1_000_000));
+
+        assertTrue(largeNanos < 20_000_000_000L, String.format(
+            "Building 100k actions took %d ms.", largeNanos / 1_000_000));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //                              Launching                                 //
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static void checkLaunches(String context,
+                                      List<Object> instances,
+                                      Rocket<Phase> sequential) {
+
+        final Rocket<Phase> parallel = builder(instances).executor(executor).build();
+        final Rocket<Phase> affinity = builder(instances).affinity(3).build();
+        final Rocket<Phase> bulk     = builder(instances).bulk().build();
+
+        for (final Phase phase : Phase.values()) {
+            final Map<Object, List<String>> reference =
+                check(context, instances, sequential, phase, Mode.SEQUENTIAL, null);
+
+            check(context, instances, parallel, phase, Mode.EXECUTOR, reference);
+            check(context, instances, affinity, phase, Mode.AFFINITY, reference);
+            check(context, instances, sequential, phase, Mode.ASYNC, reference);
+            check(context, instances, bulk, phase, Mode.BULK, reference);
+        }
+    }
+
+    /**
+     * Launches a phase and checks that every action was invoked exactly once
+     * with the right arguments, after at least one action on an instance of
+     * every parameter type had finished, and without overlapping any other
+     * action on the same instance.
+     *
+     * @param context    description of the scenario for failures
+     * @param instances  the installed instances
+     * @param rocket     the rocket to launch
+     * @param phase      the phase to launch
+     * @param mode       how the phase is launched
+     * @param reference  the order of the actions on each instance when
+     *                   launched sequentially, or {@code null}
+     * @return           the order of the actions on each instance
+     */
+    private static Map<Object, List<String>> check(String context,
+                                                   List<Object> instances,
+                                                   Rocket<Phase> rocket,
+                                                   Phase phase,
+                                                   Mode mode,
+                                                   Map<Object, List<String>> reference) {
+
+        final String where = context + ", " + phase + ", " + mode;
+        CALLS.clear();
+
+        if (mode == Mode.ASYNC) {
+            rocket.launchAsync(phase).toCompletableFuture().join();
+        } else {
+            rocket.launch(phase);
+        }
+
+        final List<Call> calls = new ArrayList<>(CALLS);
+        calls.sort(Comparator.comparingLong(c -> c.start));
+
+        // Every action should be invoked exactly once.
+        final List<String> expected = new ArrayList<>();
+        for (final Object instance : instances) {
+            for (final Method method : methods(instance.getClass(), phase)) {
+                expected.add(System.identityHashCode(instance) + " " + method.getName());
+            }
+        }
+
+        final List<String> actual = calls.stream()
+            .map(c -> System.identityHashCode(c.instance) + " " + c.method)
+            .collect(toList());
+
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals(expected, actual, where);
+
+        // Launching sequentially should follow the graph exactly.
+        if (mode == Mode.SEQUENTIAL) {
+            final PhaseGraph graph = rocket.graph(phase);
+            assertEquals(graph.actionCount(), calls.size(), where);
+            for (int i = 0; i < calls.size(); i++) {
+                assertEquals(graph.actionName(i), calls.get(i).name, where);
+            }
+        }
+
+        // Arguments should be the first installed instance of each type, and
+        // some action on an instance of that type should have finished first.
+        final Map<Class<?>, Object> first = new HashMap<>();
+        final Map<Class<?>, Long> finished = new HashMap<>();
+        for (final Call call : calls) {
+            final Class<?>[] params = method(call).getParameterTypes();
+            for (int i = 0; i < params.length; i++) {
+                final Class<?> param = params[i];
+                final Object arg = first.computeIfAbsent(param, p ->
+                    instances.stream().filter(p::isInstance).findFirst().get());
+                assertSame(arg, call.args[i], where + ", " + call.name);
+
+                final long end = finished.computeIfAbsent(param, p ->
+                    calls.stream().filter(c -> p.isInstance(c.instance))
+                        .mapToLong(c -> c.end).min().getAsLong());
+                assertTrue(end < call.start, where + ", " + call.name);
+            }
+        }
+
+        // Actions on the same instance should never overlap, and should be
+        // in the same order as when launched sequentially.
+        final Map<Object, List<String>> byInstance = new IdentityHashMap<>();
+        final Map<Object, Long> lastEnd = new IdentityHashMap<>();
+        for (final Call call : calls) {
+            final Long end = lastEnd.put(call.instance, call.end);
+            assertTrue(end == null || end < call.start, where + ", " + call.name);
+            byInstance.computeIfAbsent(call.instance, k -> new ArrayList<>())
+                .add(call.method);
+        }
+
+        if (reference != null && mode != Mode.BULK) {
+            assertEquals(reference.size(), byInstance.size(), where);
+            byInstance.forEach((instance, order) ->
+                assertEquals(reference.get(instance), order, where));
+        }
+
+        return byInstance;
+    }
+
+    private static void assertSameGraphs(String context,
+                                         Rocket<Phase> expected,
+                                         Rocket<Phase> actual) {
+
+        for (final Phase phase : Phase.values()) {
+            final PhaseGraph a = expected.graph(phase);
+            final PhaseGraph b = actual.graph(phase);
+            assertEquals(a.actionCount(), b.actionCount(), context);
+            for (int i = 0; i < a.actionCount(); i++) {
+                assertEquals(a.actionName(i), b.actionName(i), context);
+                assertArrayEquals(a.dependenciesOf(i), b.dependenciesOf(i), context);
+            }
+        }
+    }
+
+    private static long fastestBuild(List<Object> instances) {
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            final long start = System.nanoTime();
+            builder(instances).build();
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return fastest;
+    }
+
+    private static RocketBuilder<Phase> builder(List<Object> instances) {
+        final RocketBuilder<Phase> builder = Rocket.builder(Phase.class);
+        instances.forEach(builder::with);
+        return builder;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //                                Model                                   //
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the message that building should fail with, or {@code null} if
+     * every phase is possible to launch. A type is resolved once any action
+     * on an instance of it could be invoked, and an action can be invoked
+     * once every one of its parameter types is resolved.
+     *
+     * @param instances  the installed instances
+     * @return           the expected message or {@code null}
+     */
+    private static String firstStuck(List<Object> instances) {
+        for (final Phase phase : Phase.values()) {
+            final List<Object> owners = new ArrayList<>();
+            final List<Method> pending = new ArrayList<>();
+            for (final Object instance : instances) {
+                for (final Method method : methods(instance.getClass(), phase)) {
+                    owners.add(instance);
+                    pending.add(method);
+                }
+            }
+
+            final Set<Class<?>> invoked = new HashSet<>();
+            final BitSet done = new BitSet(pending.size());
+            boolean progress = true;
+            while (progress) {
+                progress = false;
+                for (int i = done.nextClearBit(0); i < pending.size();
+                         i = done.nextClearBit(i + 1)) {
+
+                    final boolean ready = Arrays.stream(
+                        pending.get(i).getParameterTypes()
+                    ).allMatch(p -> invoked.stream().anyMatch(p::isAssignableFrom));
+
+                    if (ready) {
+                        done.set(i);
+                        invoked.add(owners.get(i).getClass());
+                        progress = true;
+                    }
+                }
+            }
+
+            if (done.cardinality() < pending.size()) {
+                return "Error building " + phase + " phase. The following " +
+                    "actions appear to be stuck in an infinite loop: [\n  " +
+                    IntStream.range(0, pending.size())
+                        .filter(i -> !done.get(i))
+                        .mapToObj(i -> name(owners.get(i).getClass(), pending.get(i)))
+                        .collect(joining("\n  ")) +
+                    "\n].";
+            }
+        }
+
+        return null;
+    }
+
+    private static List<Method> methods(Class<?> clazz, Phase phase) {
+        return traverseMethods(clazz)
+            .filter(m -> {
+                final Execute execute = m.getAnnotation(Execute.class);
+                return execute != null && execute.value().equalsIgnoreCase(phase.name());
+            })
+            .collect(toList());
+    }
+
+    private static Method method(Call call) {
+        return traverseMethods(call.instance.getClass())
+            .filter(m -> m.getName().equals(call.method))
+            .findFirst().get();
+    }
+
+    private static String name(Class<?> clazz, Method method) {
+        return clazz.getSimpleName() + "#" + method.getName() + "(" +
+            Arrays.stream(method.getParameterTypes())
+                .map(Class::getSimpleName)
+                .collect(joining(", ")) + ")";
+    }
+
+    /**
+     * Creates instances of random classes in the universe until they have
+     * at least the specified number of actions in total, and shuffles them.
+     * Every class gets at least one instance, unless it is dropped.
+     *
+     * @param classes  the classes of the universe
+     * @param random   the random generator
+     * @param actions  the least number of actions
+     * @param drop     the probability that a class gets no instances
+     * @return         the instances
+     */
+    private static List<Object> instances(List<Class<?>> classes,
+                                          Random random,
+                                          int actions,
+                                          double drop) {
+
+        final List<Class<?>> included = classes.stream()
+            .filter(c -> random.nextDouble() >= drop)
+            .collect(toList());
+
+        final Map<Class<?>, Integer> counts = new HashMap<>();
+        for (final Class<?> clazz : included) {
+            counts.put(clazz, Arrays.stream(Phase.values())
+                .mapToInt(p -> methods(clazz, p).size()).sum());
+        }
+
+        final List<Object> instances = new ArrayList<>();
+        int total = 0;
+        for (int i = 0; total < actions || i < included.size(); i++) {
+            final Class<?> clazz = i < included.size() ? included.get(i)
+                : included.get(random.nextInt(included.size()));
+            try {
+                instances.add(clazz.getConstructor().newInstance());
+            } catch (final ReflectiveOperationException ex) {
+                throw new AssertionError(ex);
+            }
+            total += counts.get(clazz);
+        }
+
+        Collections.shuffle(instances, random);
+        return instances;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //                               Generator                                //
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Generates the source of a universe of interfaces and classes in the
+     * package {@code stress.u<universe>}. The parameters of the methods in a
+     * class only have types of classes that were generated before it, so the
+     * universe is acyclic as long as every class is installed. If the
+     * universe should be cyclic, two classes that depend on each other in
+     * one phase are added, and some other class waits for them.
+     *
+     * @param dir       the source directory
+     * @param universe  the universe number, also used as random seed
+     * @param cyclic    if the universe should have a cycle
+     * @param sources   list to add the generated files to
+     * @return          the qualified names of the generated classes
+     */
+    private static List<String> generate(Path dir,
+                                         int universe,
+                                         boolean cyclic,
+                                         List<File> sources) throws IOException {
+
+        final Random random = new Random(universe);
+        final String pkg = "stress.u" + universe;
+        final List<String> classes = new ArrayList<>();
+
+        // Interfaces, that may extend earlier interfaces.
+        final int interfaceCount = 4 + random.nextInt(3);
+        final List<Set<String>> interfaceTypes = new ArrayList<>();
+        for (int i = 0; i < interfaceCount; i++) {
+            final Set<String> types = new LinkedHashSet<>();
+            types.add("I" + i);
+            final String parent = i > 0 && random.nextBoolean()
+                ? "I" + random.nextInt(i) : null;
+            if (parent != null) {
+                types.addAll(interfaceTypes.get(Integer.parseInt(parent.substring(1))));
+            }
+            interfaceTypes.add(types);
+
+            write(dir, pkg.replace('.', '/') + "/I" + i + ".java",
+                "package " + pkg + ";\n\npublic interface I" + i +
+                (parent == null ? "" : " extends " + parent) + " {}\n",
+                sources);
+        }
+
+        // Classes, that may extend an earlier class and implement interfaces.
+        final int classCount = 16 + random.nextInt(10);
+        final List<Set<String>> classTypes = new ArrayList<>();
+        final Set<String> available = new LinkedHashSet<>();
+        final int waiting = cyclic ? random.nextInt(classCount) : -1;
+        final Phase cyclePhase = Phase.values()[random.nextInt(Phase.values().length)];
+
+        for (int i = 0; i < classCount; i++) {
+            final String name = "C" + i;
+            final Set<String> types = new LinkedHashSet<>();
+            types.add(name);
+
+            final String parent = i > 0 && random.nextInt(5) < 2
+                ? "C" + random.nextInt(i) : null;
+            if (parent != null) {
+                types.addAll(classTypes.get(Integer.parseInt(parent.substring(1))));
+            }
+
+            final List<String> implemented = new ArrayList<>();
+            for (int j = random.nextInt(3); j > 0; j--) {
+                final int iface = random.nextInt(interfaceCount);
+                if (!implemented.contains("I" + iface)) {
+                    implemented.add("I" + iface);
+                    types.addAll(interfaceTypes.get(iface));
+                }
+            }
+
+            final StringBuilder body = new StringBuilder();
+            final List<String> pool = new ArrayList<>(available);
+            int methods = 0;
+            for (final Phase phase : Phase.values()) {
+                for (int m = 1 + random.nextInt(2); m > 0; m--) {
+                    final List<String> params = new ArrayList<>();
+                    for (int p = pool.isEmpty() ? 0 : random.nextInt(4); p > 0; p--) {
+                        params.add(pool.get(random.nextInt(pool.size())));
+                    }
+                    method(body, phase, "c" + i + "m" + methods++, params);
+                }
+
+                if (i == waiting && phase == cyclePhase) {
+                    method(body, phase, "c" + i + "m" + methods++,
+                        Collections.singletonList("CX"));
+                }
+            }
+
+            classTypes.add(types);
+            available.addAll(types);
+            classes.add(pkg + "." + name);
+            writeClass(dir, pkg, name, parent, implemented, body, sources);
+        }
+
+        if (cyclic) {
+            for (final String[] pair : new String[][] {{"CX", "CY"}, {"CY", "CX"}}) {
+                final StringBuilder body = new StringBuilder();
+                for (final Phase phase : Phase.values()) {
+                    method(body, phase, pair[0].toLowerCase(Locale.ROOT) + phase.ordinal(),
+                        phase == cyclePhase
+                            ? Collections.singletonList(pair[1])
+                            : Collections.<String>emptyList());
+                }
+
+                classes.add(pkg + "." + pair[0]);
+                writeClass(dir, pkg, pair[0], null,
+                    Collections.<String>emptyList(), body, sources);
+            }
+        }
+
+        return classes;
+    }
+
+    private static void method(StringBuilder body,
+                               Phase phase,
+                               String name,
+                               List<String> params) {
+
+        final String signature = "#" + name + "(" + String.join(", ", params) + ")";
+        body.append("    @Execute(\"").append(phase.name().toLowerCase(Locale.ROOT))
+            .append("\") public void ").append(name).append("(")
+            .append(IntStream.range(0, params.size())
+                .mapToObj(i -> params.get(i) + " a" + i)
+                .collect(joining(", ")))
+            .append(") {\n        Probe.SINK.apply(new Object[] {this, \"")
+            .append(signature).append("\"")
+            .append(IntStream.range(0, params.size())
+                .mapToObj(i -> ", a" + i)
+                .collect(joining()))
+            .append("}).run();\n    }\n\n");
+    }
+
+    private static void writeClass(Path dir,
+                                   String pkg,
+                                   String name,
+                                   String parent,
+                                   List<String> implemented,
+                                   CharSequence body,
+                                   List<File> sources) throws IOException {
+
+        write(dir, pkg.replace('.', '/') + "/" + name + ".java",
+            "package " + pkg + ";\n\n" +
+            "import com.github.pyknic.rocket.Execute;\n" +
+            "import stress.Probe;\n\n" +
+            "public class " + name +
+            (parent == null ? "" : " extends " + parent) +
+            (implemented.isEmpty() ? "" : " implements " + String.join(", ", implemented)) +
+            " {\n\n" + body + "}\n",
+            sources);
+    }
+
+    private static void write(Path dir,
+                              String file,
+                              String source,
+                              List<File> sources) throws IOException {
+
+        final Path path = dir.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, source.getBytes(StandardCharsets.UTF_8));
+        sources.add(path.toFile());
+    }
+
+    private static String location(Class<?> clazz) throws URISyntaxException {
+        return new File(clazz.getProtectionDomain().getCodeSource()
+            .getLocation().toURI()).getPath();
+    }
+
+    /**
+     * An invocation of a generated method.
+     */
+    private static final class Call {
+
+        private final Object instance;
+        private final String method;
+        private final String name;
+        private final Object[] args;
+        private final long start;
+        private volatile long end;
+
+        Call(Object[] probe, long start) {
+            final String signature = (String) probe[1];
+            this.instance = probe[0];
+            this.method   = signature.substring(1, signature.indexOf('('));
+            this.name     = instance.getClass().getSimpleName() + signature;
+            this.args     = Arrays.copyOfRange(probe, 2, probe.length);
+            this.start    = start;
+        }
+    }
+}
@@ -16,14 +16,49 @@
  */
 package com.github.pyknic.rocket;
 
+import com.sun.management.ThreadMXBean;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
 import static com.github.pyknic.rocket.RocketTest.Phase.DESTROY;
 import static com.github.pyknic.rocket.RocketTest.Phase.INIT;
 import static com.github.pyknic.rocket.RocketTest.Phase.UPDATE;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * @author Emil Forslund
@@ -138,4 +173,1372 @@ class RocketTest {
         assertTrue(thirdDestroyed);
     }
 
-}
\ No newline at end of file
+    @Test
+    void launchParallel() {
+
+        class First {
+            @Execute("init") void init() {firstInitiated = true;}
+            @Execute("update") void update() {firstUpdated = true;}
+        }
+
+        class Second {
+            @Execute("init") void init(First first) {
+                assertTrue(firstInitiated);
+                secondInitiated = true;
+            }
+        }
+
+        class Third {
+            @Execute("init") void init(First first, Second second) {
+                assertTrue(firstInitiated);
+                assertTrue(secondInitiated);
+                thirdInitiated = true;
+            }
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+                .with(new Third())
+                .with(new Second())
+                .with(new First())
+                .executor(executor)
+                .build();
+
+            rocket.launch(INIT);
+
+            assertTrue(firstInitiated);
+            assertTrue(secondInitiated);
+            assertTrue(thirdInitiated);
+            assertFalse(firstUpdated);
+
+            rocket.launch(UPDATE);
+            rocket.launch(DESTROY);
+
+            assertTrue(firstUpdated);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void launchLongestChainFirst() {
+        final List<String> order = new CopyOnWriteArrayList<>();
+
+        class Single {
+            @Execute("init") void init() {order.add("single");}
+        }
+
+        class First {
+            @Execute("init") void init() {order.add("first");}
+        }
+
+        class Second {
+            @Execute("init") void init(First first) {order.add("second");}
+        }
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+                .with(new Single())
+                .with(new First())
+                .with(new Second())
+                .executor(executor)
+                .build();
+
+            // Before anything is measured, the longest chain goes first.
+            rocket.launch(INIT);
+            assertEquals(asList("first", "single", "second"), order);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @Tag("timing")
+    void launchCriticalPathFirst() {
+        final List<String> order = new CopyOnWriteArrayList<>();
+
+        class Slow {
+            @Execute("init") void init() throws InterruptedException {
+                order.add("slow");
+                Thread.sleep(30);
+            }
+        }
+
+        class First {
+            @Execute("init") void init() {order.add("first");}
+        }
+
+        class Second {
+            @Execute("init") void init(First first) {order.add("second");}
+        }
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+                .with(new Slow())
+                .with(new First())
+                .with(new Second())
+                .executor(executor)
+                .build();
+
+            rocket.launch(INIT);
+
+            // Once measured, the slow action is the critical path.
+            order.clear();
+            rocket.launch(INIT);
+            assertEquals(asList("slow", "first", "second"), order);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void launchAffinity() throws InterruptedException {
+        final Set<Thread> workers = ConcurrentHashMap.newKeySet();
+
+        class Component {
+            final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+            @Execute("update") void update() {threads.add(Thread.currentThread());}
+            @Execute("update") void lateUpdate() {threads.add(Thread.currentThread());}
+        }
+
+        class Dependent {
+            final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+            @Execute("update") void update(Component component) {
+                assertFalse(component.threads.isEmpty());
+                threads.add(Thread.currentThread());
+                workers.add(Thread.currentThread());
+            }
+        }
+
+        final List<Component> components = new ArrayList<>();
+        final RocketBuilder<Phase> builder = Rocket.builder(Phase.class);
+        for (int i = 0; i < 8; i++) {
+            final Component component = new Component();
+            components.add(component);
+            builder.with(component);
+        }
+
+        final Dependent dependent = new Dependent();
+        final Rocket<Phase> rocket = builder.with(dependent).affinity(2).build();
+
+        try {
+            // Let the durations settle so that the ownership is fixed.
+            for (int i = 0; i < 300; i++) rocket.launch(UPDATE);
+            components.forEach(c -> workers.addAll(c.threads));
+            components.forEach(c -> c.threads.clear());
+            dependent.threads.clear();
+
+            for (int i = 0; i < 20; i++) rocket.launch(UPDATE);
+
+            final Set<Thread> used = new HashSet<>(dependent.threads);
+            assertEquals(1, dependent.threads.size());
+            for (final Component component : components) {
+                assertEquals(1, component.threads.size());
+                used.addAll(component.threads);
+            }
+
+            assertEquals(2, used.size());
+            used.forEach(t -> assertTrue(t.getName().startsWith("rocket-affinity")));
+        } finally {
+            // An idle worker stops when it is interrupted.
+            components.forEach(c -> workers.addAll(c.threads));
+            for (final Thread worker : workers) worker.interrupt();
+            for (final Thread worker : workers) {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+                assertFalse(worker.isAlive());
+            }
+        }
+    }
+
+    @Test
+    void launchBlocking() {
+        final CountDownLatch fastInitiated = new CountDownLatch(1);
+
+        class Blocking {
+            volatile String thread;
+            @Execute(value = "init", blocking = true)
+            void init() throws InterruptedException {
+                // Would never finish if it occupied the only CPU thread.
+                assertTrue(fastInitiated.await(10, TimeUnit.SECONDS));
+                thread = Thread.currentThread().getName();
+            }
+        }
+
+        class Fast {
+            @Execute("init") void init() {fastInitiated.countDown();}
+        }
+
+        class Dependent {
+            @Execute("init") void init(Blocking blocking) {
+                assertTrue(blocking.thread.startsWith("rocket-blocking"));
+                thirdInitiated = true;
+            }
+        }
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Rocket.builder(Phase.class)
+                .with(new Blocking())
+                .with(new Fast())
+                .with(new Dependent())
+                .executor(executor)
+                .build()
+                .launch(INIT);
+
+            assertTrue(thirdInitiated);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void launchSequence() throws InterruptedException {
+        final CountDownLatch fastUpdated = new CountDownLatch(1);
+
+        class Slow {
+            boolean initiated;
+            @Execute("init") void init() throws InterruptedException {
+                // Only finishes once the other instance has moved on.
+                assertTrue(fastUpdated.await(10, TimeUnit.SECONDS));
+                initiated = true;
+            }
+            @Execute("update") void update() {assertTrue(initiated);}
+        }
+
+        class Fast {
+            @Execute("init") void init() {firstInitiated = true;}
+            @Execute("update") void update() {
+                assertTrue(firstInitiated);
+                fastUpdated.countDown();
+            }
+        }
+
+        class Dependent {
+            @Execute("update") void update(Slow slow) {
+                assertTrue(slow.initiated);
+                secondUpdated = true;
+            }
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+                .with(new Slow())
+                .with(new Fast())
+                .with(new Dependent())
+                .executor(executor)
+                .build();
+
+            rocket.launchThrough(UPDATE);
+
+            assertEquals(0, fastUpdated.getCount());
+            assertTrue(secondUpdated);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void launchTargets() {
+        final List<String> order = new CopyOnWriteArrayList<>();
+
+        class First {
+            @Execute("init") void init() {order.add("first");}
+        }
+
+        class Second {
+            @Execute("init") void init(First first) {order.add("second");}
+        }
+
+        class Third {
+            @Execute("init") void init(Second second) {order.add("third");}
+        }
+
+        class Unrelated {
+            @Execute("init") void init() {order.add("unrelated");}
+        }
+
+        final Second second = new Second();
+        final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+            .with(new Unrelated())
+            .with(new Third())
+            .with(second)
+            .with(new First())
+            .build();
+
+        rocket.launch(INIT, second);
+        assertEquals(asList("first", "second"), order);
+
+        order.clear();
+        rocket.launch(INIT, Third.class);
+        assertEquals(asList("first", "second", "third"), order);
+
+        // The order of the targets does not matter.
+        final Unrelated unrelated = new Unrelated();
+        rocket.add(unrelated);
+        order.clear();
+        rocket.launch(INIT, unrelated, second);
+        rocket.launch(INIT, second, unrelated);
+        assertEquals(asList("first", "unrelated", "second",
+            "first", "unrelated", "second"), order);
+
+        // Targets that are not installed can not be launched.
+        assertThrows(RocketException.class,
+            () -> rocket.launch(INIT, new First()));
+        assertThrows(RocketException.class,
+            () -> rocket.launch(INIT, second, new First()));
+        assertThrows(RocketException.class,
+            () -> rocket.launch(INIT, String.class));
+    }
+
+    enum Street {
+        STRASSE,
+        STRA\u00dfE
+    }
+
+    @Test
+    void launchPhaseNames() {
+        final List<String> invoked = new ArrayList<>();
+
+        class Walker {
+            @Execute("Strasse") void strasse() {invoked.add("strasse");}
+            @Execute("stra\u00dfe") void sharp() {invoked.add("sharp");}
+        }
+
+        final Rocket<Street> rocket = Rocket.builder(Street.class)
+            .with(new Walker())
+            .build();
+
+        // Phases are matched ignoring case, but without changing the length
+        // of the name, so "\u00df" is not the same as "SS".
+        rocket.launch(Street.STRASSE);
+        assertEquals(singletonList("strasse"), invoked);
+
+        invoked.clear();
+        rocket.launch(Street.STRA\u00dfE);
+        assertEquals(singletonList("sharp"), invoked);
+    }
+
+    @Test
+    void launchFailure() {
+        final IllegalStateException cause = new IllegalStateException();
+
+        class Failing {
+            @Execute("init") void init() {throw cause;}
+        }
+
+        final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+            .with(new Failing())
+            .build();
+
+        final RocketException ex =
+            assertThrows(RocketException.class, () -> rocket.launch(INIT));
+
+        assertSame(cause, ex.getCause());
+
+        // Launched asynchronously, the actions after the failure are not
+        // invoked either.
+        class Independent {
+            @Execute("init") void init() {secondInitiated = true;}
+        }
+
+        final Rocket<Phase> async = Rocket.builder(Phase.class)
+            .with(new Failing())
+            .with(new Independent())
+            .build();
+
+        final CompletableFuture<Void> launched =
+            async.launchAsync(INIT).toCompletableFuture();
+
+        assertTrue(launched.isCompletedExceptionally());
+        final CompletionException thrown =
+            assertThrows(CompletionException.class, launched::join);
+        assertTrue(thrown.getCause() instanceof RocketException);
+        assertSame(cause, thrown.getCause().getCause());
+        assertFalse(secondInitiated);
+    }
+
+    @Test
+    void launchInterrupted() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> events = new CopyOnWriteArrayList<>();
+
+        class Slow {
+            @Execute("init") void init() throws InterruptedException {
+                started.countDown();
+                release.await();
+                events.add("slow");
+            }
+        }
+
+        class Next {
+            @Execute("init") void init(Slow slow) {events.add("next");}
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+                .with(new Slow())
+                .with(new Next())
+                .executor(executor)
+                .build();
+
+            final AtomicReference<Throwable> thrown = new AtomicReference<>();
+            final AtomicReference<Boolean> flagged = new AtomicReference<>();
+            final Thread launcher = new Thread(() -> {
+                try {
+                    rocket.launch(INIT);
+                } catch (final RuntimeException ex) {
+                    thrown.set(ex);
+                }
+                flagged.set(Thread.currentThread().isInterrupted());
+                events.add("returned");
+            });
+
+            launcher.start();
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            launcher.interrupt();
+
+            // The launch must not return while the action is still running.
+            launcher.join(100);
+            assertTrue(launcher.isAlive());
+
+            release.countDown();
+            launcher.join(TimeUnit.SECONDS.toMillis(10));
+
+            assertEquals(asList("slow", "returned"), events);
+            assertTrue(thrown.get() instanceof RocketException);
+            assertTrue(flagged.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void launchFailureObserved() throws InterruptedException {
+        final Set<Thread> workers = ConcurrentHashMap.newKeySet();
+
+        class Failing {
+            @Execute("init") void init() throws InterruptedException {
+                workers.add(Thread.currentThread());
+                Thread.sleep(5);
+                throw new IllegalStateException();
+            }
+        }
+
+        final List<Long> durations = new CopyOnWriteArrayList<>();
+        final RocketListener listener = new RocketListener() {
+            @Override
+            public void actionFailed(PhaseGraph phase, int action,
+                                     long nanos, Throwable cause) {
+                durations.add(nanos);
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            // Every launch mode reports how long the failing action ran.
+            for (final RocketBuilder<Phase> builder : asList(
+                    Rocket.builder(Phase.class),
+                    Rocket.builder(Phase.class).executor(executor),
+                    Rocket.builder(Phase.class).affinity(1))) {
+
+                final Rocket<Phase> rocket = builder
+                    .with(new Failing())
+                    .listener(listener)
+                    .build();
+
+                durations.clear();
+                assertThrows(RocketException.class, () -> rocket.launch(INIT));
+                assertEquals(1, durations.size());
+                assertTrue(durations.get(0) >= TimeUnit.MILLISECONDS.toNanos(5),
+                    "Reported " + durations.get(0) + " ns.");
+            }
+        } finally {
+            executor.shutdown();
+            workers.removeIf(t -> !t.getName().startsWith("rocket-affinity"));
+            for (final Thread worker : workers) worker.interrupt();
+            for (final Thread worker : workers) {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+                assertFalse(worker.isAlive());
+            }
+        }
+    }
+
+    @Test
+    void buildCyclic() {
+
+        class Second {}
+
+        class First {
+            @Execute("init") void init() {}
+            @Execute("update") void update(Second second) {}
+        }
+
+        class Third {
+            @Execute("update") void update(First first) {}
+        }
+
+        class Fourth extends Second {
+            @Execute("update") void update(Third third) {}
+        }
+
+        final RocketException ex = assertThrows(RocketException.class, () ->
+            Rocket.builder(Phase.class)
+                .with(new First())
+                .with(new Third())
+                .with(new Fourth())
+                .build()
+        );
+
+        assertTrue(ex.getMessage().startsWith("Error building UPDATE phase."));
+        assertTrue(ex.getMessage().contains("First#update(Second)"));
+        assertTrue(ex.getMessage().contains("Third#update(First)"));
+        assertTrue(ex.getMessage().contains("Fourth#update(Third)"));
+    }
+
+    @Test
+    void buildLazy() {
+
+        class First {
+            @Execute("init") void init() {firstInitiated = true;}
+            @Execute("update") void update() {firstUpdated = true;}
+        }
+
+        class Second {
+            @Execute("init") void init(First first) {
+                assertTrue(firstInitiated);
+                secondInitiated = true;
+            }
+        }
+
+        class Cyclic {
+            @Execute("destroy") void destroy(Cyclic self) {}
+        }
+
+        final List<String> compiled = new ArrayList<>();
+        final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+            .with(new Second())
+            .with(new First())
+            .listener(new RocketListener() {
+                @Override
+                public void afterCompile(PhaseGraph phase, long nanos) {
+                    compiled.add(phase.phase());
+                }
+            })
+            .lazy()
+            .build();
+
+        assertEquals(emptyList(), compiled);
+        rocket.prepare(INIT);
+        assertEquals(singletonList("INIT"), compiled);
+        rocket.launch(INIT);
+        assertTrue(firstInitiated);
+        assertTrue(secondInitiated);
+
+        rocket.launch(UPDATE);
+        assertTrue(firstUpdated);
+        assertEquals(asList("INIT", "UPDATE"), compiled);
+
+        // Phases are still validated when building.
+        final RocketException ex = assertThrows(RocketException.class, () ->
+            Rocket.builder(Phase.class)
+                .with(new Cyclic())
+                .lazy()
+                .build()
+        );
+
+        assertTrue(ex.getMessage().startsWith("Error building DESTROY phase."));
+        assertTrue(ex.getMessage().contains("Cyclic#destroy(Cyclic)"));
+
+        // A listener may wait for another phase to be compiled.
+        final AtomicReference<Rocket<Phase>> waiting = new AtomicReference<>();
+        waiting.set(Rocket.builder(Phase.class)
+            .with(new Second())
+            .with(new First())
+            .listener(new RocketListener() {
+                @Override
+                public void beforeCompile(String phase) {
+                    if ("INIT".equals(phase)) {
+                        CompletableFuture.runAsync(() ->
+                            waiting.get().prepare(UPDATE)).join();
+                    }
+                }
+            })
+            .lazy()
+            .build());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+            waiting.get().prepare(INIT));
+    }
+
+    @Test
+    void buildParallel() {
+
+        class First {
+            @Execute("init") void init() {}
+            @Execute("update") void update() {}
+        }
+
+        class Second {
+            @Execute("init") void init(First first) {}
+        }
+
+        class Third {
+            @Execute("init") void init(Second second) {}
+            @Execute("update") void update(First first) {}
+        }
+
+        final List<Object> instances = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            instances.add(i % 3 == 0 ? new Third()
+                        : i % 3 == 1 ? new Second() : new First());
+        }
+
+        final List<String> sequential = new ArrayList<>();
+        final List<String> parallel   = new ArrayList<>();
+
+        for (final boolean inParallel : new boolean[] {false, true}) {
+            final List<String> order = inParallel ? parallel : sequential;
+            final RocketBuilder<Phase> builder = Rocket.builder(Phase.class)
+                .listener(new RocketListener() {
+                    @Override
+                    public void beforeAction(PhaseGraph phase, int action) {
+                        order.add(phase.actionName(action) + " after " +
+                            Arrays.toString(phase.dependenciesOf(action)));
+                    }
+                });
+
+            instances.forEach(builder::with);
+            if (inParallel) builder.parallelBuild();
+
+            final Rocket<Phase> rocket = builder.build();
+            rocket.launch(INIT);
+            rocket.launch(UPDATE);
+        }
+
+        assertEquals(sequential, parallel);
+
+        // The first impossible phase should be reported.
+        class Fourth {
+            @Execute("update") void update(Fourth fourth) {}
+            @Execute("destroy") void destroy(Fourth fourth) {}
+        }
+
+        final RocketException ex = assertThrows(RocketException.class, () ->
+            Rocket.builder(Phase.class)
+                .with(new First())
+                .with(new Fourth())
+                .parallelBuild()
+                .build()
+        );
+
+        assertTrue(ex.getMessage().startsWith("Error building UPDATE phase."));
+    }
+
+    @Test
+    void buildBulk() {
+        final List<String> order = new CopyOnWriteArrayList<>();
+
+        class World {
+            @Execute("update") void update() {order.add("world");}
+        }
+
+        class Entity {
+            boolean updated;
+            @Execute("update") void update(World world) {updated = true;}
+            @Execute("update") void lateUpdate(World world) {
+                assertTrue(updated);
+                order.add("entity");
+            }
+        }
+
+        class Camera {
+            @Execute("update") void update(Entity entity) {
+                order.add("camera");
+            }
+        }
+
+        final List<Entity> entities = new ArrayList<>();
+        final RocketBuilder<Phase> builder = Rocket.builder(Phase.class)
+            .with(new Camera());
+
+        for (int i = 0; i < 5000; i++) {
+            final Entity entity = new Entity();
+            entities.add(entity);
+            builder.with(entity);
+        }
+
+        final Rocket<Phase> rocket = builder.with(new World()).bulk().build();
+
+        final PhaseGraph graph = rocket.graph(UPDATE);
+        assertEquals(4, graph.actionCount());
+        assertEquals("World#update()", graph.actionName(0));
+        assertEquals("Entity#update(World) [5000 instances]", graph.actionName(1));
+        assertEquals("Entity#lateUpdate(World) [5000 instances]",
+            graph.actionName(2));
+        assertEquals("Camera#update(Entity)", graph.actionName(3));
+
+        rocket.launch(UPDATE);
+        assertTrue(entities.stream().allMatch(e -> e.updated));
+        assertEquals("world", order.get(0));
+        assertEquals(5000, order.stream().filter("entity"::equals).count());
+        assertEquals("camera", order.get(order.size() - 1));
+
+        // Targeting any instance in a group launches the whole group.
+        order.clear();
+        rocket.launch(UPDATE, entities.get(42));
+        assertEquals(5001, order.size());
+
+        // Groups are formed again when instances are added or removed.
+        assertTrue(rocket.remove(entities.get(0)));
+        assertEquals("Entity#update(World) [4999 instances]",
+            rocket.graph(UPDATE).actionName(1));
+
+        class Broken {
+            @Execute("update") void update() {
+                throw new IllegalStateException();
+            }
+        }
+
+        final RocketBuilder<Phase> broken = Rocket.builder(Phase.class).bulk();
+        for (int i = 0; i < 3000; i++) broken.with(new Broken());
+
+        final RocketException ex = assertThrows(RocketException.class,
+            () -> broken.build().launch(UPDATE));
+        assertEquals("Could not invoke annotated method " +
+            "Broken#update() [3000 instances].", ex.getMessage());
+        assertTrue(ex.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    void analyze() {
+
+        class First {
+            @Execute("init") void init() {}
+        }
+
+        class Second {
+            @Execute("init") void init(First first) {}
+        }
+
+        class Third {
+            @Execute("init") void init(First first, Second second) {}
+        }
+
+        class Fourth {
+            @Execute("init") void init(First first) {}
+        }
+
+        final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+            .with(new Third())
+            .with(new Second())
+            .with(new Fourth())
+            .with(new First())
+            .build();
+
+        final PhaseGraph graph = rocket.graph(INIT);
+        assertEquals(asList("First#init()", "Second#init(First)",
+            "Fourth#init(First)", "Third#init(First, Second)"),
+            IntStream.range(0, graph.actionCount())
+                .mapToObj(graph::actionName).collect(toList()));
+
+        final PhaseAnalysis analysis = PhaseAnalysis.of(graph);
+        assertEquals(3, analysis.depth());
+        assertArrayEquals(new int[] {1, 2, 1}, analysis.widths());
+        assertArrayEquals(new int[] {0, 1, 3}, analysis.longestChain());
+        assertArrayEquals(new int[] {3, 1}, analysis.highestFanIn(2));
+        assertEquals(4 / 3.0, analysis.parallelism(), 1e-9);
+
+        // With durations, the longest chain is the slowest one.
+        final long[] nanos = {1000, 1000, 5000, 1000};
+        final PhaseAnalysis timed = PhaseAnalysis.of(graph, i -> nanos[i]);
+        assertArrayEquals(new int[] {0, 2}, timed.longestChain());
+        assertEquals(8000 / 6000.0, timed.parallelism(), 1e-9);
+
+        final String dot = timed.toDot();
+        assertTrue(dot.startsWith("digraph \"INIT\" {"));
+        assertTrue(dot.contains("a0 -> a2 [style=bold];"));
+        assertTrue(dot.contains("a1 -> a3;"));
+
+        final String json = timed.toJson();
+        assertTrue(json.contains("\"widths\": [1, 2, 1]"));
+        assertTrue(json.contains("{\"index\": 3, \"name\": " +
+            "\"Third#init(First, Second)\", \"level\": 2, " +
+            "\"dependencies\": [0, 1], \"nanos\": 1000}"));
+
+        // DOT has no escapes for control characters, but is UTF-8.
+        final PhaseAnalysis named = PhaseAnalysis.of(new PhaseGraph() {
+            @Override public String phase() {return "Caf\u00e9";}
+            @Override public int actionCount() {return 1;}
+            @Override public String actionName(int action) {return "a\tb & \"c\"";}
+            @Override public int[] dependenciesOf(int action) {return new int[0];}
+            @Override public int[] dependentsOf(int action) {return new int[0];}
+        });
+
+        assertTrue(named.toDot().startsWith("digraph \"Caf\u00e9\" {"));
+        assertTrue(named.toDot().contains("[label=\"a&#9;b &amp; \\\"c\\\"\""));
+        assertTrue(named.toJson().contains("\"name\": \"a\\tb & \\\"c\\\"\""));
+    }
+
+    @Test
+    void buildCached() throws IOException {
+
+        class First {
+            @Execute("init") void init() {firstInitiated = true;}
+        }
+
+        class Second {
+            @Execute("init") void init(First first) {
+                assertTrue(firstInitiated);
+                secondInitiated = true;
+            }
+        }
+
+        final Path dir = Files.createTempDirectory("rocket");
+        final Path file = dir.resolve("plans.bin");
+
+        try {
+            Rocket.builder(Phase.class)
+                .with(new Second())
+                .with(new First())
+                .planCache(file)
+                .build();
+
+            assertTrue(Files.exists(file));
+            final byte[] written = Files.readAllBytes(file);
+
+            Rocket.builder(Phase.class)
+                .with(new Second())
+                .with(new First())
+                .planCache(file)
+                .build()
+                .launch(INIT);
+
+            assertTrue(firstInitiated);
+            assertTrue(secondInitiated);
+            assertArrayEquals(written, Files.readAllBytes(file));
+
+            // A different set of instances replaces the cache.
+            Rocket.builder(Phase.class)
+                .with(new First())
+                .planCache(file)
+                .build();
+
+            assertFalse(Arrays.equals(written, Files.readAllBytes(file)));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    void launchFirstInstalled() {
+
+        class First {
+            @Execute("init") void init() {}
+        }
+
+        class Second extends First {}
+
+        class Third {
+            Object injected;
+            @Execute("init") void init(First first) {injected = first;}
+        }
+
+        final First first   = new First();
+        final Second second = new Second();
+        final Third third   = new Third();
+
+        Rocket.builder(Phase.class)
+            .with(second)
+            .with(third)
+            .with(first)
+            .build()
+            .launch(INIT);
+
+        assertSame(second, third.injected);
+    }
+
+    @Test
+    void launchWithoutAllocating() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean,
+            "Allocations can not be measured on this JVM.");
+        final ThreadMXBean allocations =
+            (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+
+        class Counter {
+            int count;
+            @Execute("update") int update() {return ++count;}
+        }
+
+        class Total {
+            long total;
+            @Execute("update") long update(Counter counter) {
+                return total += counter.count;
+            }
+            @Execute("update") void check() {}
+        }
+
+        final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+            .with(new Counter())
+            .with(new Total())
+            .build();
+
+        // Give the handles a chance to be compiled before measuring.
+        for (int i = 0; i < 200_000; i++) rocket.launch(UPDATE);
+
+        final int launches = 1_000_000;
+        final long before = allocations.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < launches; i++) rocket.launch(UPDATE);
+        final long after = allocations.getThreadAllocatedBytes(thread);
+
+        assertEquals(0, (after - before) / launches, String.format(
+            "Allocated %d bytes in %d launches.", after - before, launches));
+    }
+
+    @Test
+    void loop() {
+        final AtomicReference<TickLoop> loop = new AtomicReference<>();
+
+        class Counter {
+            int updates;
+            @Execute("update") void update() {
+                if (++updates == 5) loop.get().stop();
+            }
+        }
+
+        final Counter counter = new Counter();
+        final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+            .with(counter)
+            .build();
+
+        assertThrows(IllegalArgumentException.class, () -> rocket.loop(UPDATE, 0));
+
+        loop.set(rocket.loop(UPDATE, 1000));
+        assertEquals(1, loop.get().period(TimeUnit.MILLISECONDS));
+
+        loop.get().run();
+
+        assertEquals(5, counter.updates);
+        assertEquals(5, loop.get().ticks());
+        assertEquals(5, loop.get().tickTimes().count());
+        assertFalse(loop.get().isRunning());
+
+        // A stopped loop can't be started again.
+        loop.get().run();
+        assertEquals(5, counter.updates);
+    }
+
+    interface Service {}
+    interface Named extends Service {}
+    static abstract class Base implements Named {}
+
+    @Test
+    void resolveAncestors() {
+        final List<String> order = new ArrayList<>();
+
+        class Impl extends Base implements Runnable {
+            @Execute("init") void init() {order.add("impl");}
+            @Override public void run() {}
+        }
+
+        class ByInterface {
+            @Execute("init") void init(Service service) {order.add("service");}
+        }
+
+        class ByClass {
+            @Execute("init") void init(Base base, Runnable runnable) {
+                order.add("base");
+            }
+        }
+
+        final Impl impl = new Impl();
+
+        final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+            .with(impl)
+            .build();
+
+        // The interface of a superclass resolves the added methods.
+        rocket.add(new ByInterface());
+        rocket.add(new ByClass());
+        rocket.launch(INIT);
+        assertEquals(asList("impl", "service", "base"), order);
+
+        // Removing an unrelated instance keeps the resolved types.
+        final ByClass extra = new ByClass();
+        rocket.add(extra);
+        assertTrue(rocket.remove(extra));
+        order.clear();
+        rocket.launch(INIT);
+        assertEquals(asList("impl", "service", "base"), order);
+
+        // Without the implementation, nothing resolves the interfaces.
+        assertThrows(RocketException.class, () -> rocket.remove(impl));
+    }
+
+    @Test
+    void addAndRemove() {
+
+        class First {
+            @Execute("init") void init() {}
+        }
+
+        class Second extends First {}
+
+        class Third {
+            Object injected;
+            @Execute("init") void init(First first) {injected = first;}
+        }
+
+        final First first   = new First();
+        final Second second = new Second();
+        final Third third   = new Third();
+
+        final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+            .with(second)
+            .build();
+
+        rocket.add(third);
+        rocket.add(first);
+        rocket.launch(INIT);
+        assertSame(second, third.injected);
+
+        // Arguments are bound to the next installed instance.
+        assertTrue(rocket.remove(second));
+        assertFalse(rocket.remove(second));
+        rocket.launch(INIT);
+        assertSame(first, third.injected);
+
+        // A failed change leaves the launcher as it was.
+        assertThrows(RocketException.class, () -> rocket.remove(first));
+        third.injected = null;
+        rocket.launch(INIT);
+        assertSame(first, third.injected);
+    }
+
+    @Test
+    void launchAsync() {
+        final CompletableFuture<Void> loaded = new CompletableFuture<>();
+
+        class First {
+            @Execute("init") CompletionStage<Void> init() {
+                firstInitiated = true;
+                return loaded;
+            }
+        }
+
+        class Second {
+            @Execute("init") void init() {secondInitiated = true;}
+        }
+
+        class Third {
+            @Execute("init") void init(First first) {thirdInitiated = true;}
+        }
+
+        final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+            .with(new First())
+            .with(new Second())
+            .with(new Third())
+            .build();
+
+        final CompletableFuture<Void> launched =
+            rocket.launchAsync(INIT).toCompletableFuture();
+
+        // Only the action that depends on the returned stage should wait.
+        assertTrue(firstInitiated);
+        assertTrue(secondInitiated);
+        assertFalse(thirdInitiated);
+        assertFalse(launched.isDone());
+
+        loaded.complete(null);
+
+        assertTrue(thirdInitiated);
+        assertTrue(launched.isDone());
+        assertFalse(launched.isCompletedExceptionally());
+    }
+
+    @Test
+    void launchConcurrently() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final CountDownLatch running = new CountDownLatch(2);
+        final AtomicInteger launches = new AtomicInteger();
+
+        class First {
+            @Execute("init") void init() throws InterruptedException {
+                launches.incrementAndGet();
+                started.countDown();
+                assertTrue(proceed.await(10, TimeUnit.SECONDS));
+                throw new IllegalStateException("Failed on purpose.");
+            }
+        }
+
+        class Second {
+            @Execute("update") void update() throws InterruptedException {
+                // Only finishes once the third instance is being destroyed.
+                running.countDown();
+                assertTrue(running.await(10, TimeUnit.SECONDS));
+                secondUpdated = true;
+            }
+        }
+
+        class Third {
+            @Execute("destroy") void destroy() throws InterruptedException {
+                running.countDown();
+                assertTrue(running.await(10, TimeUnit.SECONDS));
+                thirdDestroyed = true;
+            }
+        }
+
+        final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+            .with(new First())
+            .with(new Second())
+            .with(new Third())
+            .build();
+
+        final List<RocketException> failures = new CopyOnWriteArrayList<>();
+        final Runnable init = () -> {
+            try {
+                rocket.launch(INIT);
+            } catch (final RocketException ex) {
+                failures.add(ex);
+            }
+        };
+
+        // The second launch of the same phase joins the one already running.
+        final Thread firstLaunch = new Thread(init);
+        final Thread secondLaunch = new Thread(init);
+        firstLaunch.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        secondLaunch.start();
+        while (secondLaunch.getState() != Thread.State.WAITING) {
+            assertTrue(secondLaunch.isAlive());
+            Thread.yield();
+        }
+
+        proceed.countDown();
+        firstLaunch.join();
+        secondLaunch.join();
+
+        assertEquals(1, launches.get());
+        assertEquals(2, failures.size());
+        assertSame(failures.get(0), failures.get(1));
+
+        // Phases without any instances in common run at the same time.
+        final Thread update = new Thread(() -> rocket.launch(UPDATE));
+        update.start();
+        rocket.launch(DESTROY);
+        update.join();
+
+        assertTrue(secondUpdated);
+        assertTrue(thirdDestroyed);
+
+        // Phases with an instance in common never overlap.
+        final AtomicInteger inside = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+
+        class Shared {
+            void enter() {
+                if (inside.incrementAndGet() > 1) overlaps.incrementAndGet();
+                Thread.yield();
+                inside.decrementAndGet();
+            }
+            @Execute("init") void init() {enter();}
+            @Execute("update") void update() {enter();}
+        }
+
+        final Rocket<Phase> shared = Rocket.builder(Phase.class)
+            .with(new Shared())
+            .build();
+
+        final Thread updates = new Thread(() ->
+            IntStream.range(0, 1000).forEach(i -> shared.launch(UPDATE)));
+        updates.start();
+        IntStream.range(0, 1000).forEach(i -> shared.launch(INIT));
+        updates.join();
+
+        assertEquals(0, overlaps.get());
+    }
+
+    @Test
+    void launchNested() {
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+
+        try {
+            checkNested(Rocket.builder(Phase.class).executor(pool));
+
+            // The only thread of the executor is busy with the outer launch.
+            checkNested(Rocket.builder(Phase.class).executor(single));
+        } finally {
+            pool.shutdown();
+            single.shutdown();
+        }
+    }
+
+    @Test
+    void launchNestedAffinity() throws InterruptedException {
+        final Set<Thread> workers = new HashSet<>();
+
+        try {
+            // The worker that owns the instance is busy with the outer
+            // launch, so the nested launch can not be handed to it.
+            workers.addAll(checkNested(Rocket.builder(Phase.class).affinity(1)));
+            workers.addAll(checkNested(Rocket.builder(Phase.class).affinity(4)));
+        } finally {
+            // Asynchronous launches do not run on the affinity workers.
+            workers.removeIf(t -> !t.getName().startsWith("rocket-affinity"));
+            for (final Thread worker : workers) worker.interrupt();
+            for (final Thread worker : workers) {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+                assertFalse(worker.isAlive());
+            }
+        }
+    }
+
+    /**
+     * Launches a phase from inside an action of another phase with the same
+     * instance, both synchronously and asynchronously.
+     *
+     * @param builder  the builder to install the instance in
+     * @return         the threads that invoked the actions
+     */
+    private Set<Thread> checkNested(RocketBuilder<Phase> builder) {
+        final AtomicReference<Rocket<Phase>> rocket = new AtomicReference<>();
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        class First {
+            @Execute("init") void init() {
+                // Launches a phase with the same instance from a worker.
+                threads.add(Thread.currentThread());
+                rocket.get().launch(UPDATE);
+                firstInitiated = true;
+            }
+            @Execute("update") void update() {
+                threads.add(Thread.currentThread());
+                firstUpdated = true;
+            }
+        }
+
+        rocket.set(builder.with(new First()).build());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            firstInitiated = false;
+            firstUpdated   = false;
+            rocket.get().launch(INIT);
+            assertTrue(firstInitiated);
+            assertTrue(firstUpdated);
+
+            firstInitiated = false;
+            firstUpdated   = false;
+            rocket.get().launchAsync(INIT).toCompletableFuture().join();
+            assertTrue(firstInitiated);
+            assertTrue(firstUpdated);
+        });
+
+        return threads;
+    }
+
+    @Test
+    void launchObserved() {
+
+        class First {
+            @Execute("init") void init() {firstInitiated = true;}
+        }
+
+        class Second {
+            @Execute("init") void init() {secondInitiated = true;}
+        }
+
+        class Third {
+            @Execute("init") void init(First first) throws InterruptedException {
+                Thread.sleep(10);
+                thirdInitiated = true;
+            }
+        }
+
+        final LaunchProfiler profiler = new LaunchProfiler();
+        final Rocket<Phase> rocket = Rocket.builder(Phase.class)
+            .with(new First())
+            .with(new Second())
+            .with(new Third())
+            .listener(profiler)
+            .build();
+
+        rocket.launch(INIT);
+
+        final LaunchProfiler.PhaseProfile profile =
+            profiler.profile("INIT").orElseThrow(AssertionError::new);
+
+        assertEquals(1, profile.latency().count());
+        assertEquals(3, profile.graph().actionCount());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, profile.latency(i).count());
+        }
+
+        final int[] path = profile.criticalPath();
+        assertEquals(2, path.length);
+        assertEquals("First#init()", profile.graph().actionName(path[0]));
+        assertEquals("Third#init(First)", profile.graph().actionName(path[1]));
+        assertTrue(profile.criticalPathNanos() >= 10_000_000);
+
+        // Launching only some targets does not reset the whole phase.
+        final Second second = new Second();
+        rocket.add(second);
+        rocket.launch(INIT);
+        rocket.launch(INIT, second);
+        rocket.launch(INIT);
+
+        final LaunchProfiler.PhaseProfile whole =
+            profiler.profile(rocket.graph(INIT)).orElseThrow(AssertionError::new);
+        assertEquals(2, whole.latency().count());
+        assertEquals(4, whole.graph().actionCount());
+        assertSame(whole, profiler.profile("INIT").orElse(null));
+        assertEquals(1, profile.latency().count());
+
+        // Launchers with different graphs can share the profiler.
+        Rocket.builder(Phase.class)
+            .with(new First())
+            .listener(profiler)
+            .build()
+            .launch(INIT);
+
+        assertEquals(1, profiler.profile("INIT")
+            .orElseThrow(AssertionError::new).graph().actionCount());
+        assertEquals(2, whole.latency().count());
+
+        // Graphs that are replaced by adding and removing instances are
+        // eventually forgotten.
+        class Fourth {
+            @Execute("update") void update() {}
+        }
+
+        for (int i = 0; i < 100; i++) {
+            final Fourth fourth = new Fourth();
+            rocket.add(fourth);
+            rocket.launch(UPDATE);
+            rocket.remove(fourth);
+            rocket.launch(UPDATE);
+        }
+
+        assertFalse(profiler.profile(whole.graph()).isPresent());
+        assertSame(profiler.profile("UPDATE").orElse(null),
+            profiler.profile(rocket.graph(UPDATE)).orElse(null));
+        final int reported = profiler.report().split("Critical path").length - 1;
+        assertTrue(reported <= 17, "Reported " + reported + " graphs.");
+    }
+
+}